@@ -2,14 +2,12 @@ package examples.shell;
 
 import io.termd.core.function.BiConsumer;
 import io.termd.core.function.Consumer;
-import io.termd.core.readline.Keymap;
+import io.termd.core.readline.KeyBindings;
 import io.termd.core.readline.Readline;
 import io.termd.core.tty.TtyConnection;
 import io.termd.core.tty.TtyEvent;
-import io.termd.core.util.Helper;
 import io.termd.core.util.Vector;
 
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Formatter;
 import java.util.List;
@@ -30,14 +28,9 @@ public class Shell implements Consumer<TtyConnection> {
   private static final Pattern splitter = Pattern.compile("\\w+");
 
   public void accept(final TtyConnection conn) {
-    InputStream inputrc = Keymap.class.getResourceAsStream("inputrc");
     // TODO keymap.bindings保存的是src/main/resources/io/termd/core/readline/inputrc中设置的特殊指令
     //  格式为：特殊指令：指令名称
-    Keymap keymap = new Keymap(inputrc);
-    Readline readline = new Readline(keymap);
-    for (io.termd.core.readline.Function function : Helper.loadServices(Thread.currentThread().getContextClassLoader(), io.termd.core.readline.Function.class)) {
-      readline.addFunction(function);
-    }
+    Readline readline = new Readline(KeyBindings.getDefault());
     conn.write("Welcome to Term.d shell example\n\n");
     read(conn, readline);
   }
@@ -17,14 +17,16 @@
 package io.termd.core.http;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.termd.core.function.BiConsumer;
 import io.termd.core.function.Consumer;
 import io.termd.core.io.BinaryDecoder;
-import io.termd.core.io.BinaryEncoder;
 import io.termd.core.tty.TtyConnectionSupport;
 import io.termd.core.tty.TtyEvent;
 import io.termd.core.tty.TtyEventDecoder;
-import io.termd.core.tty.TtyOutputMode;
+import io.termd.core.tty.TtyConnection;
+import io.termd.core.tty.TtyOutputEncoder;
 import io.termd.core.util.Vector;
 
 import java.io.IOException;
@@ -62,7 +64,7 @@ public abstract class HttpTtyConnection extends TtyConnectionSupport {
   private Consumer<Vector> sizeHandler;
   private final TtyEventDecoder eventDecoder;
   private final BinaryDecoder decoder;
-  private final Consumer<int[]> stdout;
+  private final TtyOutputEncoder stdout;
   private Consumer<Void> closeHandler;
   private Consumer<String> termHandler;
   private long lastAccessedTime = System.currentTimeMillis();
@@ -76,12 +78,12 @@ public abstract class HttpTtyConnection extends TtyConnectionSupport {
     this.size = size;
     this.eventDecoder = new TtyEventDecoder(3, 26, 4);
     this.decoder = new BinaryDecoder(512, charset, eventDecoder);
-    this.stdout = new TtyOutputMode(new BinaryEncoder(charset, new Consumer<byte[]>() {
+    this.stdout = new TtyOutputEncoder(charset, PooledByteBufAllocator.DEFAULT, new Consumer<ByteBuf>() {
       @Override
-      public void accept(byte[] bytes) {
-        write(bytes);
+      public void accept(ByteBuf buffer) {
+        write(buffer);
       }
-    }));
+    });
   }
 
   @Override
@@ -106,6 +108,29 @@ public abstract class HttpTtyConnection extends TtyConnectionSupport {
 
   protected abstract void write(byte[] buffer);
 
+  /**
+   * Write a buffer to the client, the connection becomes responsible for releasing the buffer. The default
+   * implementation copies the buffer and calls {@link #write(byte[])}.
+   *
+   * @param buffer the buffer to write
+   */
+  protected void write(ByteBuf buffer) {
+    byte[] bytes;
+    try {
+      bytes = new byte[buffer.readableBytes()];
+      buffer.readBytes(bytes);
+    } finally {
+      buffer.release();
+    }
+    write(bytes);
+  }
+
+  @Override
+  public TtyConnection write(String s) {
+    stdout.write(s);
+    return this;
+  }
+
   /**
    * Special case to handle tty events.
    *
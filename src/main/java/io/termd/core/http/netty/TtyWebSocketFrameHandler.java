@@ -76,6 +76,22 @@ public class TtyWebSocketFrameHandler extends SimpleChannelInboundHandler<TextWe
           }
         }
 
+        @Override
+        protected void write(ByteBuf buffer) {
+          ChannelHandlerContext ctx = context;
+          if (ctx != null) {
+            ctx.writeAndFlush(new TextWebSocketFrame(buffer));
+          } else {
+            buffer.release();
+          }
+        }
+
+        @Override
+        public boolean isWritable() {
+          ChannelHandlerContext ctx = context;
+          return ctx == null || ctx.channel().isWritable();
+        }
+
         @Override
         public void schedule(Runnable task, long delay, TimeUnit unit) {
           if (context != null) {
@@ -116,6 +132,18 @@ public class TtyWebSocketFrameHandler extends SimpleChannelInboundHandler<TextWe
     }
   }
 
+  @Override
+  public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+    HttpTtyConnection tmp = conn;
+    if (tmp != null && ctx.channel().isWritable()) {
+      Consumer<Void> drainHandler = tmp.getDrainHandler();
+      if (drainHandler != null) {
+        drainHandler.accept(null);
+      }
+    }
+    super.channelWritabilityChanged(ctx);
+  }
+
   public void channelRead0(ChannelHandlerContext ctx, TextWebSocketFrame msg) throws Exception {
     conn.writeToDecoder(msg.text());
   }
@@ -18,6 +18,8 @@ package io.termd.core.io;
 
 import io.termd.core.function.Consumer;
 import io.termd.core.util.Helper;
+import io.termd.core.util.IntSlice;
+import io.termd.core.util.IntSliceConsumer;
 
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
@@ -27,16 +29,38 @@ import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CoderResult;
 
 /**
+ * Decodes bytes to code points.
+ *
+ * UTF-8 and US-ASCII are decoded directly from the byte input to code points without going through a
+ * {@link CharsetDecoder}, partial UTF-8 sequences are carried across calls. Other charsets use the
+ * {@link CharsetDecoder} of the charset.<p/>
+ *
+ * When the consumer is an {@link IntSliceConsumer} the fast path delivers views over the decoder buffer instead
+ * of new arrays.
+ *
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
 public class BinaryDecoder {
 
   private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final Charset US_ASCII = Charset.forName("US-ASCII");
+  private static final int REPLACEMENT_CHAR = 0xFFFD;
+
+  private static final int CHARSET = 0, ASCII = 1, UTF8 = 2;
 
   private CharsetDecoder decoder;
   private ByteBuffer bBuf;
   private final CharBuffer cBuf;
-  private final Consumer<int[]> onChar;
+  private final IntSliceConsumer onChar;
+
+  // Fast path state
+  private int mode;
+  private final int[] codePoints;
+  private final IntSlice slice = new IntSlice();
+  private int partialCodePoint; // The bits of the current UTF-8 sequence
+  private int partialRemaining; // The number of continuation bytes the current UTF-8 sequence still needs
+  private int partialMin; // The smallest code point the current UTF-8 sequence can encode
 
   public BinaryDecoder(Charset charset, Consumer<int[]> onChar) {
     this(2, charset, onChar);
@@ -49,7 +73,9 @@ public class BinaryDecoder {
     decoder = charset.newDecoder();
     bBuf = EMPTY;
     cBuf = CharBuffer.allocate(initialSize); // We need at least 2
-    this.onChar = onChar;
+    codePoints = new int[initialSize];
+    mode = modeOf(charset);
+    this.onChar = IntSlice.adapt(onChar);
   }
 
   /**
@@ -59,6 +85,8 @@ public class BinaryDecoder {
    */
   public void setCharset(Charset charset) {
     decoder = charset.newDecoder();
+    mode = modeOf(charset);
+    partialRemaining = 0;
   }
 
   public void write(byte[] data) {
@@ -66,6 +94,101 @@ public class BinaryDecoder {
   }
 
   public void write(byte[] data, int start, int len) {
+    switch (mode) {
+      case UTF8:
+        decodeUtf8(data, start, len);
+        break;
+      case ASCII:
+        decodeAscii(data, start, len);
+        break;
+      default:
+        decodeCharset(data, start, len);
+        break;
+    }
+  }
+
+  private void decodeAscii(byte[] data, int start, int len) {
+    int[] buf = codePoints;
+    int pos = 0;
+    for (int i = start, end = start + len;i < end;i++) {
+      int b = data[i];
+      buf[pos++] = b >= 0 ? b : REPLACEMENT_CHAR;
+      if (pos == buf.length) {
+        emit(pos);
+        pos = 0;
+      }
+    }
+    if (pos > 0) {
+      emit(pos);
+    }
+  }
+
+  private void decodeUtf8(byte[] data, int start, int len) {
+    int[] buf = codePoints;
+    int pos = 0;
+    int partial = partialCodePoint;
+    int remaining = partialRemaining;
+    int min = partialMin;
+    for (int i = start, end = start + len;i < end;i++) {
+      int b = data[i];
+      int cp;
+      if (remaining == 0) {
+        if (b >= 0) {
+          cp = b;
+        } else if ((b & 0xE0) == 0xC0) {
+          partial = b & 0x1F;
+          remaining = 1;
+          min = 0x80;
+          continue;
+        } else if ((b & 0xF0) == 0xE0) {
+          partial = b & 0x0F;
+          remaining = 2;
+          min = 0x800;
+          continue;
+        } else if ((b & 0xF8) == 0xF0) {
+          partial = b & 0x07;
+          remaining = 3;
+          min = 0x10000;
+          continue;
+        } else {
+          // Stray continuation byte or invalid lead byte
+          cp = REPLACEMENT_CHAR;
+        }
+      } else if ((b & 0xC0) == 0x80) {
+        partial = (partial << 6) | (b & 0x3F);
+        if (--remaining > 0) {
+          continue;
+        }
+        cp = partial;
+        if (cp < min || cp > Character.MAX_CODE_POINT || (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE)) {
+          // Overlong encoding, out of range or surrogate
+          cp = REPLACEMENT_CHAR;
+        }
+      } else {
+        // Truncated sequence : replace it and decode this byte again as the start of a new sequence
+        remaining = 0;
+        cp = REPLACEMENT_CHAR;
+        i--;
+      }
+      buf[pos++] = cp;
+      if (pos == buf.length) {
+        emit(pos);
+        pos = 0;
+      }
+    }
+    partialCodePoint = partial;
+    partialRemaining = remaining;
+    partialMin = min;
+    if (pos > 0) {
+      emit(pos);
+    }
+  }
+
+  private void emit(int len) {
+    onChar.accept(slice.set(codePoints, 0, len));
+  }
+
+  private void decodeCharset(byte[] data, int start, int len) {
 
     // Fill the byte buffer
     // TODO 获取当前ByteBuffer的剩余长度
@@ -156,6 +279,16 @@ public class BinaryDecoder {
     bBuf.compact();
   }
 
+  private static int modeOf(Charset charset) {
+    if (UTF_8.equals(charset)) {
+      return UTF8;
+    } else if (US_ASCII.equals(charset)) {
+      return ASCII;
+    } else {
+      return CHARSET;
+    }
+  }
+
   private static boolean isSurrogate(char ch) {
     return ch >= '\uD800' && ch < ('\uDFFF' + 1);
   }
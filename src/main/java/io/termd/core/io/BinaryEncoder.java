@@ -17,6 +17,8 @@
 package io.termd.core.io;
 
 import io.termd.core.function.Consumer;
+import io.termd.core.util.IntSlice;
+import io.termd.core.util.IntSliceConsumer;
 
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
@@ -26,7 +28,7 @@ import java.util.Arrays;
 /**
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
-public class BinaryEncoder implements Consumer<int[]> {
+public class BinaryEncoder implements IntSliceConsumer {
 
   private volatile Charset charset;
   final Consumer<byte[]> onByte;
@@ -47,14 +49,23 @@ public class BinaryEncoder implements Consumer<int[]> {
 
   @Override
   public void accept(int[] codePoints) {
+    encode(codePoints, 0, codePoints.length);
+  }
+
+  @Override
+  public void accept(IntSlice codePoints) {
+    encode(codePoints.array(), codePoints.offset(), codePoints.offset() + codePoints.length());
+  }
+
+  private void encode(int[] codePoints, int from, int to) {
     final char[] tmp = new char[2];
     int capacity = 0;
-    for (int codePoint : codePoints) {
-      capacity += Character.charCount(codePoint);
+    for (int i = from;i < to;i++) {
+      capacity += Character.charCount(codePoints[i]);
     }
     CharBuffer charBuf = CharBuffer.allocate(capacity);
-    for (int codePoint : codePoints) {
-      int size = Character.toChars(codePoint, tmp, 0);
+    for (int i = from;i < to;i++) {
+      int size = Character.toChars(codePoints[i], tmp, 0);
       charBuf.put(tmp, 0, size);
     }
     charBuf.flip();
@@ -45,6 +45,8 @@ public class PtyMaster extends Thread {
   private Status status;
   private Process process;
   private boolean interrupted;
+  private final Object readLock = new Object();
+  private boolean readPaused;
 
   public PtyMaster(String line, Consumer<int[]> stdout, Consumer<Void> doneHandler) {
     this.line = line;
@@ -72,6 +74,33 @@ public class PtyMaster extends Thread {
     this.changeHandler = changeHandler;
   }
 
+  /**
+   * Stop reading the process output, the process blocks once its output pipes are full.
+   */
+  public void pauseReading() {
+    synchronized (readLock) {
+      readPaused = true;
+    }
+  }
+
+  /**
+   * Read the process output again after {@link #pauseReading()}.
+   */
+  public void resumeReading() {
+    synchronized (readLock) {
+      readPaused = false;
+      readLock.notifyAll();
+    }
+  }
+
+  private void awaitReading() throws InterruptedException {
+    synchronized (readLock) {
+      while (readPaused) {
+        readLock.wait();
+      }
+    }
+  }
+
   private class Pipe extends Thread {
 
     private final Charset charset = UTF_8; // We suppose the process out/err uses UTF-8
@@ -91,6 +120,12 @@ public class PtyMaster extends Thread {
     public void run() {
       byte[] buffer = new byte[512];
       while (true) {
+        try {
+          awaitReading();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
         try {
           int l = in.read(buffer);
           if (l == -1) {
@@ -117,6 +152,8 @@ public class PtyMaster extends Thread {
     if (!interrupted) {
       interrupted = true;
       process.destroy();
+      // Let the pipes reach the end of the streams
+      resumeReading();
     }
   }
 
@@ -18,15 +18,16 @@ package io.termd.core.pty;
 
 import io.termd.core.function.BiConsumer;
 import io.termd.core.function.Consumer;
-import io.termd.core.readline.Keymap;
+import io.termd.core.readline.Functions;
+import io.termd.core.readline.KeyBindings;
 import io.termd.core.readline.Readline;
+import io.termd.core.tty.FlowControlledTtyConnection;
 import io.termd.core.tty.TtyConnection;
 import io.termd.core.tty.TtyEvent;
 import io.termd.core.util.Helper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.InputStream;
 
 /**
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
@@ -71,14 +72,8 @@ public class TtyBridge {
   }
 
   public TtyBridge readline() {
-    InputStream inputrc = Keymap.class.getResourceAsStream("inputrc");
-    Keymap keymap = new Keymap(inputrc);
-    Readline readline = new Readline(keymap);
-    for (io.termd.core.readline.Function function : Helper.loadServices(Thread.currentThread().getContextClassLoader(), io.termd.core.readline.Function.class)) {
-      log.trace("Server is adding function to readline: {}", function);
-
-      readline.addFunction(function);
-    }
+    // Application functions are looked up with the context class loader of the session
+    Readline readline = new Readline(KeyBindings.getDefault().withFunctions(Functions.loadDefaults()));
     conn.setTerminalTypeHandler(new Consumer<String>() {
       @Override
       public void accept(String s) {
@@ -104,21 +99,17 @@ public class TtyBridge {
           return;
         }
 
+        final FlowControlledTtyConnection flowControl = conn instanceof FlowControlledTtyConnection ?
+            (FlowControlledTtyConnection) conn : null;
+        ProcessOutput output = new ProcessOutput(conn, flowControl);
         final PtyMaster task = new PtyMaster(line,
-                new Consumer<int[]>() {
-                  @Override
-                  public void accept(final int[] buffer) {
-                    conn.execute(new Runnable() {
-                      @Override
-                      public void run() {
-                        conn.stdoutHandler().accept(buffer);
-                      }
-                    });
-                  }
-                },
+                output,
                 new Consumer<Void>() {
                   @Override
                   public void accept(Void v) {
+                    if (flowControl != null) {
+                      flowControl.setDrainHandler(null);
+                    }
                     conn.setEventHandler(null);
                     conn.execute(new Runnable() {
                       @Override
@@ -128,6 +119,15 @@ public class TtyBridge {
                     });
                   }
                 });
+        output.task = task;
+        if (flowControl != null) {
+          flowControl.setDrainHandler(new Consumer<Void>() {
+            @Override
+            public void accept(Void v) {
+              task.resumeReading();
+            }
+          });
+        }
         conn.setEventHandler(new BiConsumer<TtyEvent, Integer>() {
           @Override
           public void accept(TtyEvent event, Integer integer) {
@@ -144,4 +144,32 @@ public class TtyBridge {
       }
     });
   }
+
+  /**
+   * Writes the process output from the pipe threads, so the transport accounts for it, and pauses the pipes
+   * while a {@link FlowControlledTtyConnection} is not writable.
+   */
+  private static class ProcessOutput implements Consumer<int[]> {
+
+    private final TtyConnection conn;
+    private final FlowControlledTtyConnection flowControl;
+    private PtyMaster task;
+
+    ProcessOutput(TtyConnection conn, FlowControlledTtyConnection flowControl) {
+      this.conn = conn;
+      this.flowControl = flowControl;
+    }
+
+    @Override
+    public void accept(int[] buffer) {
+      conn.stdoutHandler().accept(buffer);
+      if (flowControl != null && !flowControl.isWritable()) {
+        task.pauseReading();
+        // The connection may have drained before the pause
+        if (flowControl.isWritable()) {
+          task.resumeReading();
+        }
+      }
+    }
+  }
 }
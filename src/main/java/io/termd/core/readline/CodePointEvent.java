@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+/**
+ * The key event of a single code point, the events of the latin-1 code points are preallocated.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+final class CodePointEvent extends KeyEventSupport {
+
+  private static final CodePointEvent[] CACHE = new CodePointEvent[256];
+
+  static {
+    for (int i = 0;i < CACHE.length;i++) {
+      CACHE[i] = new CodePointEvent(i);
+    }
+  }
+
+  static CodePointEvent of(int codePoint) {
+    return codePoint >= 0 && codePoint < CACHE.length ? CACHE[codePoint] : new CodePointEvent(codePoint);
+  }
+
+  private final int codePoint;
+
+  private CodePointEvent(int codePoint) {
+    this.codePoint = codePoint;
+  }
+
+  @Override
+  public int getCodePointAt(int index) throws IndexOutOfBoundsException {
+    if (index != 0) {
+      throw new IndexOutOfBoundsException("Wrong index " + index);
+    }
+    return codePoint;
+  }
+
+  @Override
+  public int length() {
+    return 1;
+  }
+
+  @Override
+  public String toString() {
+    return "key:" + codePoint;
+  }
+}
@@ -16,10 +16,12 @@
 
 package io.termd.core.readline;
 
+import io.termd.core.function.Consumer;
 import io.termd.core.util.Helper;
 import io.termd.core.util.Vector;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -37,6 +39,7 @@ public class Completion {
   private final Readline.Interaction interaction;
   private final int[] line;
   private final int[] prefix;
+  private volatile Consumer<Void> cancelHandler;
 
   public Completion(Readline.Interaction interaction) {
 
@@ -57,6 +60,7 @@ public class Completion {
     this.interaction = interaction;
     this.prefix = prefix.toArray();
     this.line = interaction.line().copy().insert(interaction.buffer().toArray()).toArray();
+    interaction.completion = this;
   }
 
   /**
@@ -88,9 +92,18 @@ public class Completion {
    * @param terminal true if an extra whitespace must be inserted after the text
    */
   public void complete(int[] text, boolean terminal) {
-    if (!done.compareAndSet(false, true)) {
+    if (!tryComplete(text, terminal)) {
       throw new IllegalStateException();
     }
+  }
+
+  /**
+   * Like {@link #complete(int[], boolean)} but returns false instead of throwing when this completion is done.
+   */
+  boolean tryComplete(int[] text, boolean terminal) {
+    if (!done.compareAndSet(false, true)) {
+      return false;
+    }
     if (text.length > 0 || terminal) {
       LineBuffer work = interaction.buffer().copy();
       LineStatus.Ext toto = work.insertEscaped(text); // Todo improve that
@@ -123,6 +136,7 @@ public class Completion {
       interaction.refresh(work);
     }
     interaction.resume();
+    return true;
   }
 
   /**
@@ -141,6 +155,61 @@ public class Completion {
     interaction.resume();
   }
 
+  /**
+   * Set a handler called when this completion is cancelled. A completion with a cancel handler is cancelled when
+   * the user types before it is done, otherwise the typed keys are handled after the completion.
+   *
+   * @param handler the handler
+   */
+  public void setCancelHandler(Consumer<Void> handler) {
+    cancelHandler = handler;
+  }
+
+  /**
+   * Cancel this completion with no modifications, the completion cannot be used anymore.
+   *
+   * @return true when the completion was not done and is now cancelled
+   */
+  public boolean cancel() {
+    if (!done.compareAndSet(false, true)) {
+      return false;
+    }
+    Consumer<Void> handler = cancelHandler;
+    if (handler != null) {
+      handler.accept(null);
+    }
+    interaction.resume();
+    return true;
+  }
+
+  /**
+   * @return true when this completion is completed or cancelled
+   */
+  public boolean isDone() {
+    return done.get();
+  }
+
+  /**
+   * @return true when this completion is cancelled when the user types
+   */
+  boolean isCancellable() {
+    return cancelHandler != null && !done.get();
+  }
+
+  /**
+   * Execute a task on the connection thread.
+   */
+  void execute(Runnable task) {
+    interaction.conn.execute(task);
+  }
+
+  /**
+   * Schedule a task on the connection thread.
+   */
+  void schedule(Runnable task, long delay, TimeUnit unit) {
+    interaction.conn.schedule(task, delay, unit);
+  }
+
   /**
    * End this completion with no modifications.
    */
@@ -148,6 +217,13 @@ public class Completion {
     complete(new int[0], false);
   }
 
+  /**
+   * Like {@link #end()} but returns false instead of throwing when this completion is done.
+   */
+  boolean tryEnd() {
+    return tryComplete(new int[0], false);
+  }
+
   /**
    * Insert an inline completion with {@code terminate} arg set to false.
    *
@@ -158,12 +234,28 @@ public class Completion {
   }
 
   /**
-   * Complete this completion, this should be called once with the result, each result being a possible suffix.
+   * Complete this completion, this should be called once with the result, each result being a possible suffix.<p/>
+   *
+   * The candidates are listed below the edition line one screen at a time, the user is asked before a large
+   * number of candidates is listed.
    *
    * @param candidates the candidates for completion
    */
   public void suggest(List<int[]> candidates) {
-    suggest(Helper.computeBlock(size(), candidates));
+    if (!trySuggest(candidates)) {
+      throw new IllegalStateException();
+    }
+  }
+
+  /**
+   * Like {@link #suggest(List)} but returns false instead of throwing when this completion is done.
+   */
+  boolean trySuggest(List<int[]> candidates) {
+    if (!done.compareAndSet(false, true)) {
+      return false;
+    }
+    new CompletionPager(interaction, candidates).start();
+    return true;
   }
 
 }
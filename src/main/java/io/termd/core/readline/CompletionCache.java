@@ -0,0 +1,263 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import io.termd.core.function.Consumer;
+import io.termd.core.util.Helper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A completion handler requesting the candidates of a prefix to a {@link CompletionProvider} and caching them,
+ * the same handler can be used by the readline instances of several sessions.<p/>
+ *
+ * The candidates are kept sorted per prefix, the candidates of a prefix extending a cached prefix are found by
+ * a binary search in the cached candidates instead of a new request. The cached candidates expire after the
+ * {@link #setMaxAge(long, TimeUnit) max age}.<p/>
+ *
+ * A request is cancelled when the user types before the candidates are delivered or when its
+ * {@link #setTimeout(long, TimeUnit) timeout} is reached, the completion then ends without modifications.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class CompletionCache implements Consumer<Completion> {
+
+  private static final Comparator<int[]> COMPARATOR = new Comparator<int[]>() {
+    @Override
+    public int compare(int[] o1, int[] o2) {
+      int len = Math.min(o1.length, o2.length);
+      for (int i = 0;i < len;i++) {
+        if (o1[i] != o2[i]) {
+          return o1[i] < o2[i] ? -1 : 1;
+        }
+      }
+      return o1.length - o2.length;
+    }
+  };
+
+  private final CompletionProvider provider;
+  private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+      return size() > maxEntries;
+    }
+  };
+  private volatile long timeout = TimeUnit.SECONDS.toNanos(5);
+  private volatile long maxAge = TimeUnit.SECONDS.toNanos(60);
+  private volatile int maxEntries = 256;
+
+  public CompletionCache(CompletionProvider provider) {
+    this.provider = provider;
+  }
+
+  /**
+   * Set the time a completion waits for the candidates of the provider.
+   *
+   * @return this cache
+   */
+  public CompletionCache setTimeout(long timeout, TimeUnit unit) {
+    this.timeout = unit.toNanos(timeout);
+    return this;
+  }
+
+  /**
+   * Set the time after which the candidates are requested again to the provider.
+   *
+   * @return this cache
+   */
+  public CompletionCache setMaxAge(long maxAge, TimeUnit unit) {
+    this.maxAge = unit.toNanos(maxAge);
+    return this;
+  }
+
+  /**
+   * Set the max number of cached prefixes, the least recently used prefix is discarded first.
+   *
+   * @return this cache
+   */
+  public CompletionCache setMaxEntries(int maxEntries) {
+    this.maxEntries = maxEntries;
+    return this;
+  }
+
+  /**
+   * Discard the cached candidates.
+   */
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  @Override
+  public void accept(final Completion completion) {
+    final int[] prefix = completion.prefix();
+    int[][] cached = lookup(prefix);
+    if (cached != null) {
+      apply(completion, prefix, cached);
+      return;
+    }
+    final CompletionRequest request = new CompletionRequest(prefix, new Consumer<List<int[]>>() {
+      @Override
+      public void accept(List<int[]> candidates) {
+        final int[][] sorted = sort(prefix, candidates);
+        store(prefix, sorted, System.nanoTime());
+        completion.execute(new Runnable() {
+          @Override
+          public void run() {
+            // The user may have typed meanwhile, then the completion is already done
+            apply(completion, prefix, sorted);
+          }
+        });
+      }
+    });
+    completion.setCancelHandler(new Consumer<Void>() {
+      @Override
+      public void accept(Void v) {
+        request.cancel();
+      }
+    });
+    completion.schedule(new Runnable() {
+      @Override
+      public void run() {
+        // The user may have cancelled the completion meanwhile
+        if (request.cancel()) {
+          completion.tryEnd();
+        }
+      }
+    }, timeout, TimeUnit.NANOSECONDS);
+    provider.provide(request);
+  }
+
+  /**
+   * @return the cached candidates of the prefix or null
+   */
+  private synchronized int[][] lookup(int[] prefix) {
+    long now = System.nanoTime();
+    String s = Helper.fromCodePoints(prefix);
+    for (int len = prefix.length;len >= 0;len--) {
+      String key = s.substring(0, s.offsetByCodePoints(0, len));
+      Entry entry = entries.get(key);
+      if (entry != null) {
+        if (now - entry.time > maxAge) {
+          entries.remove(key);
+        } else if (len == prefix.length) {
+          return entry.candidates;
+        } else {
+          int[][] candidates = filter(entry.candidates, prefix);
+          entries.put(s, new Entry(candidates, entry.time));
+          return candidates;
+        }
+      }
+    }
+    return null;
+  }
+
+  private synchronized void store(int[] prefix, int[][] candidates, long time) {
+    entries.put(Helper.fromCodePoints(prefix), new Entry(candidates, time));
+  }
+
+  private static void apply(Completion completion, int[] prefix, int[][] candidates) {
+    if (candidates.length == 0) {
+      completion.tryEnd();
+    } else if (candidates.length == 1) {
+      completion.tryComplete(Arrays.copyOfRange(candidates[0], prefix.length, candidates[0].length), true);
+    } else {
+      // The common prefix of sorted candidates is the common prefix of the first and the last
+      int[] first = candidates[0];
+      int[] last = candidates[candidates.length - 1];
+      int common = 0;
+      while (common < first.length && common < last.length && first[common] == last[common]) {
+        common++;
+      }
+      if (common > prefix.length) {
+        completion.tryComplete(Arrays.copyOfRange(first, prefix.length, common), false);
+      } else {
+        completion.trySuggest(Arrays.asList(candidates));
+      }
+    }
+  }
+
+  /**
+   * @return the sorted distinct candidates starting with the prefix
+   */
+  private static int[][] sort(int[] prefix, List<int[]> candidates) {
+    List<int[]> list = new ArrayList<int[]>(candidates.size());
+    for (int[] candidate : candidates) {
+      if (startsWith(candidate, prefix)) {
+        list.add(candidate);
+      }
+    }
+    int[][] sorted = list.toArray(new int[list.size()][]);
+    Arrays.sort(sorted, COMPARATOR);
+    int size = 0;
+    for (int[] candidate : sorted) {
+      if (size == 0 || !Arrays.equals(sorted[size - 1], candidate)) {
+        sorted[size++] = candidate;
+      }
+    }
+    return size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+  }
+
+  /**
+   * @return the sorted candidates starting with the prefix
+   */
+  private static int[][] filter(int[][] sorted, int[] prefix) {
+    int low = 0;
+    int high = sorted.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (COMPARATOR.compare(sorted[mid], prefix) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    int end = low;
+    while (end < sorted.length && startsWith(sorted[end], prefix)) {
+      end++;
+    }
+    return Arrays.copyOfRange(sorted, low, end);
+  }
+
+  private static boolean startsWith(int[] candidate, int[] prefix) {
+    if (candidate.length < prefix.length) {
+      return false;
+    }
+    for (int i = 0;i < prefix.length;i++) {
+      if (candidate[i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static class Entry {
+
+    private final int[][] candidates;
+    private final long time;
+
+    Entry(int[][] candidates, long time) {
+      this.candidates = candidates;
+      this.time = time;
+    }
+  }
+}
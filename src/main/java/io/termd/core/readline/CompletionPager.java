@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import io.termd.core.util.Helper;
+import io.termd.core.util.IntSlice;
+import io.termd.core.util.IntSliceBuilder;
+import io.termd.core.util.Vector;
+import io.termd.core.util.Wcwidth;
+
+import java.util.List;
+
+/**
+ * Lists the candidates of a completion below the line one screen at a time.<p/>
+ *
+ * The candidates are laid out in columns as wide as the widest candidate, the widths are computed in a first
+ * pass over the candidates and the rows are then written page by page, so the memory used does not depend on the
+ * number of candidates. Like readline, the user is asked before listing {@link #QUERY_ITEMS} candidates or more
+ * and a page ends with a {@code --More--} prompt: space displays the next page, return the next row and
+ * {@code q} stops the listing.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+final class CompletionPager {
+
+  /**
+   * The number of candidates from which the user is asked before listing them.
+   */
+  static final int QUERY_ITEMS = 100;
+
+  private static final int[] MORE = Helper.toCodePoints("--More--");
+  private static final int[] ERASE_MORE = { '\r', '\033', '[', 'K' };
+
+  private static final int LISTING = 0;
+  private static final int QUERYING = 1;
+  private static final int PAGING = 2;
+  private static final int DONE = 3;
+
+  private final Readline.Interaction interaction;
+  private final List<int[]> candidates;
+  private final IntSliceBuilder output = new IntSliceBuilder();
+  private final int cellWidth;
+  private final int columns;
+  private final int pageRows;
+  private int index;
+  private int state;
+
+  CompletionPager(Readline.Interaction interaction, List<int[]> candidates) {
+    Vector size = interaction.size();
+    int max = 0;
+    for (int[] candidate : candidates) {
+      max = Math.max(max, width(candidate));
+    }
+    this.interaction = interaction;
+    this.candidates = candidates;
+    this.cellWidth = max;
+    this.columns = Math.max(1, size.x() / (max + 1));
+    this.pageRows = size.y() > 1 ? size.y() - 1 : 23;
+  }
+
+  /**
+   * Start the listing.
+   */
+  synchronized void start() {
+    interaction.pager = this;
+    output.append('\n');
+    if (candidates.size() >= QUERY_ITEMS) {
+      output.append(Helper.toCodePoints("Display all " + candidates.size() + " possibilities? (y or n)"));
+      state = QUERYING;
+      flush();
+      deliver();
+    } else {
+      state = LISTING;
+      page(pageRows);
+    }
+  }
+
+  /**
+   * Handle the keys typed by the user while the listing waits for an answer.
+   */
+  synchronized void deliver() {
+    Readline readline = interaction.readline();
+    while (state == QUERYING || state == PAGING) {
+      if (!readline.hasEvent()) {
+        return;
+      }
+      KeyEvent event = readline.nextEvent();
+      int key = event.length() == 1 ? event.getCodePointAt(0) : -1;
+      if (state == QUERYING) {
+        switch (key) {
+          case 'y':
+          case 'Y':
+          case ' ':
+            output.append('\n');
+            state = LISTING;
+            page(pageRows);
+            break;
+          case 'n':
+          case 'N':
+          case 3:
+          case 127:
+            output.append('\n');
+            flush();
+            end();
+            break;
+          default:
+            bell();
+        }
+      } else {
+        switch (key) {
+          case ' ':
+            output.append(ERASE_MORE);
+            state = LISTING;
+            page(pageRows);
+            break;
+          case '\r':
+          case '\n':
+            output.append(ERASE_MORE);
+            state = LISTING;
+            page(1);
+            break;
+          case 'q':
+          case 'Q':
+          case 'n':
+          case 'N':
+          case 3:
+          case 127:
+            output.append(ERASE_MORE);
+            flush();
+            end();
+            break;
+          default:
+            bell();
+        }
+      }
+    }
+  }
+
+  /**
+   * Write rows of candidates.
+   *
+   * @param rows the max number of rows
+   */
+  private void page(int rows) {
+    int size = candidates.size();
+    while (index < size && rows-- > 0) {
+      for (int column = 0;column < columns && index < size;column++) {
+        int[] candidate = candidates.get(index++);
+        output.append(candidate);
+        for (int i = width(candidate);i < cellWidth;i++) {
+          output.append(' ');
+        }
+        output.append(column < columns - 1 ? ' ' : '\n');
+      }
+    }
+    if (index < size) {
+      output.append(MORE);
+      state = PAGING;
+      flush();
+    } else {
+      if (size > 0) {
+        output.append('\n');
+      }
+      flush();
+      end();
+    }
+  }
+
+  private void end() {
+    state = DONE;
+    interaction.pager = null;
+    interaction.redraw();
+    interaction.resume();
+  }
+
+  private void flush() {
+    IntSlice.adapt(interaction.conn.stdoutHandler()).accept(output.slice());
+    output.clear();
+  }
+
+  private void bell() {
+    output.append('\007');
+    flush();
+  }
+
+  private static int width(int[] candidate) {
+    int width = 0;
+    for (int codePoint : candidate) {
+      width += Math.max(0, Wcwidth.of(codePoint));
+    }
+    return width;
+  }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+/**
+ * Provides the candidates of a {@link CompletionCache}.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public interface CompletionProvider {
+
+  /**
+   * Provide all the candidates starting with the prefix of the request, the candidates are delivered with
+   * {@link CompletionRequest#complete(java.util.List)} from any thread. The provider should stop working on a
+   * request when it is {@link CompletionRequest#isCancelled() cancelled}.
+   *
+   * @param request the request
+   */
+  void provide(CompletionRequest request);
+
+}
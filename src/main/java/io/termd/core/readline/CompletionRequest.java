@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import io.termd.core.function.Consumer;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A request of candidates to a {@link CompletionProvider}, the request is cancelled when the user types before
+ * the candidates are delivered or when the deadline is reached.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public final class CompletionRequest {
+
+  private static final int PENDING = 0;
+  private static final int COMPLETED = 1;
+  private static final int CANCELLED = 2;
+
+  private final int[] prefix;
+  private final Consumer<List<int[]>> handler;
+  private final AtomicInteger state = new AtomicInteger();
+
+  CompletionRequest(int[] prefix, Consumer<List<int[]>> handler) {
+    this.prefix = prefix;
+    this.handler = handler;
+  }
+
+  /**
+   * @return the prefix to complete
+   */
+  public int[] prefix() {
+    return prefix;
+  }
+
+  /**
+   * @return true when the candidates are not expected anymore
+   */
+  public boolean isCancelled() {
+    return state.get() == CANCELLED;
+  }
+
+  /**
+   * Deliver the candidates, the candidates of a cancelled request are ignored.
+   *
+   * @param candidates all the candidates starting with the prefix
+   * @return true when the candidates are accepted
+   */
+  public boolean complete(List<int[]> candidates) {
+    if (state.compareAndSet(PENDING, COMPLETED)) {
+      handler.accept(candidates);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * @return true when the request was pending and is now cancelled
+   */
+  boolean cancel() {
+    return state.compareAndSet(PENDING, CANCELLED);
+  }
+}
@@ -16,28 +16,113 @@
 
 package io.termd.core.readline;
 
+import io.termd.core.util.IntSlice;
+
 import java.nio.IntBuffer;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.NoSuchElementException;
 
 /**
+ * Decodes the key events from the pending code points, the bindings of the keymap are compiled in a trie and the
+ * pending code points are kept in a ring buffer.
+ *
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
 public class EventQueue implements Iterator<KeyEvent> {
 
-  private KeyEvent[] bindings;
+  private static final int[] PASTE_START = { 27, '[', '2', '0', '0', '~' };
+  private static final int[] PASTE_END = { 27, '[', '2', '0', '1', '~' };
+
+  // The max number of code points buffered while waiting for the paste end, they are decoded as a paste beyond
+  static final int MAX_PASTE_LENGTH = 64 * 1024;
+
+  private KeyTrie bindings;
   private final LinkedList<KeyEvent> events = new LinkedList<KeyEvent>();
-  private int[] pending = new int[0];
+
+  // Ring buffer of pending code points, its capacity is a power of two
+  private int[] pending = new int[16];
+  private int head;
+  private int size;
+
+  // The match of the pending code points, invalidated when they change
+  private KeyEvent match;
+  private int matchLength;
+  private boolean matched;
+
+  // Bracketed paste decoding, the number of pending code points already searched for the paste end
+  private boolean bracketedPaste;
+  private int pasteScan;
+
+  // Set when the pending code points continue a paste that was decoded in several events
+  private boolean pasting;
+  // Set when the matched paste event is continued by the next code points
+  private boolean pasteContinues;
+
+  // The number of pending code points that do not wait for the end of a key sequence anymore
+  private int expired;
 
   public EventQueue(Keymap keymap) {
     // TODO bindings保存的是src/main/resources/io/termd/core/readline/inputrc中设置的特殊指令
-    this.bindings = keymap.bindings.toArray(new KeyEvent[keymap.bindings.size()]);
+    this.bindings = KeyTrie.compile(keymap.bindings);
+  }
+
+  EventQueue(KeyBindings bindings) {
+    this.bindings = bindings.trie;
+  }
+
+  /**
+   * Replace the bindings used to decode the pending code points.
+   *
+   * @param bindings the new bindings
+   */
+  void setBindings(KeyBindings bindings) {
+    this.bindings = bindings.trie;
+    matched = false;
+  }
+
+  /**
+   * @return true when the bracketed pastes are decoded
+   */
+  public boolean isBracketedPaste() {
+    return bracketedPaste;
+  }
+
+  /**
+   * Decode the text framed by {@code ESC[200~} and {@code ESC[201~} as a single event instead of matching
+   * it against the bindings, the event is available once the whole paste is received and its line breaks
+   * are translated to {@code \n}. A paste longer than {@link #MAX_PASTE_LENGTH} is decoded as several events, a
+   * paste that is not terminated is decoded when it {@link #expire() expires}.
+   *
+   * @param bracketedPaste true to decode bracketed pastes
+   * @return this queue
+   */
+  public EventQueue setBracketedPaste(boolean bracketedPaste) {
+    this.bracketedPaste = bracketedPaste;
+    pasting = false;
+    matched = false;
+    return this;
   }
 
   public EventQueue append(int... codePoints) {
-    pending = Arrays.copyOf(pending, pending.length + codePoints.length);
-    System.arraycopy(codePoints, 0 , pending, pending.length - codePoints.length, codePoints.length);
+    ensureCapacity(codePoints.length);
+    for (int codePoint : codePoints) {
+      pending[(head + size++) & (pending.length - 1)] = codePoint;
+    }
+    matched = false;
+    return this;
+  }
+
+  public EventQueue append(IntSlice codePoints) {
+    int length = codePoints.length();
+    ensureCapacity(length);
+    int[] array = codePoints.array();
+    int offset = codePoints.offset();
+    for (int i = 0;i < length;i++) {
+      pending[(head + size++) & (pending.length - 1)] = array[offset + i];
+    }
+    matched = false;
     return this;
   }
 
@@ -49,7 +134,7 @@ public class EventQueue implements Iterator<KeyEvent> {
   public KeyEvent peek() {
     if (events.isEmpty()) {
       // TODO 返回特殊指定
-      return match(pending);
+      return match();
     } else {
       return events.peekFirst();
     }
@@ -62,86 +147,196 @@ public class EventQueue implements Iterator<KeyEvent> {
   public KeyEvent next() {
     if (events.isEmpty()) {
       // TODO 看看是不是特殊指令
-      KeyEvent next = match(pending);
-      if (next != null) {
-        events.add(next);
-        pending = Arrays.copyOfRange(pending, next.length(), pending.length);
+      KeyEvent next = match();
+      if (next == null) {
+        throw new NoSuchElementException();
       }
+      head = (head + matchLength) & (pending.length - 1);
+      size -= matchLength;
+      expired = Math.max(0, expired - matchLength);
+      matched = false;
+      pasteScan = 0;
+      pasting = pasteContinues;
+      return next;
     }
     return events.removeFirst();
   }
 
   public int[] clear() {
     events.clear();
-    int[] buffer = pending;
-    pending = new int[0];
+    int[] buffer = toArray();
+    head = 0;
+    size = 0;
+    expired = 0;
+    matched = false;
+    pasteScan = 0;
+    pasting = false;
     return buffer;
   }
 
+  /**
+   * @return true when the pending code points are a proper prefix of a key sequence or a paste without its end
+   *         and wait for more input
+   */
+  public boolean hasPrefix() {
+    return events.isEmpty() && size > 0 && match() == null;
+  }
+
+  /**
+   * Stop waiting for the end of the key sequence started by the pending code points, they are decoded as the
+   * bindings they start with and as literal keys, or as a paste when they start a paste. The code points received
+   * afterwards are decoded as usual.
+   *
+   * @return true when the pending code points were waiting for more input
+   */
+  public boolean expire() {
+    if (!hasPrefix()) {
+      return false;
+    }
+    expired = size;
+    matched = false;
+    return true;
+  }
+
   /**
    * @return the buffer chars as a read-only int buffer
    */
   public IntBuffer getBuffer() {
-    return IntBuffer.wrap(pending).asReadOnlyBuffer();
-  }
-
-  private KeyEvent match(int[] buffer) {
-    if (buffer.length > 0) {
-      KeyEvent candidate = null;
-      int prefixes = 0;
-      next:
-      // TODO 都是FunctionEvent
-      for (KeyEvent action : bindings) {
-        if (action.length() > 0) {
-          if (action.length() <= buffer.length) {
-            for (int i = 0;i < action.length();i++) {
-              if (action.getCodePointAt(i) != buffer[i]) {
-                continue next;
-              }
-            }
-            if (candidate != null && candidate.length() > action.length()) {
-              continue next;
-            }
-            candidate = action;
-          } else {
-            for (int i = 0;i < buffer.length;i++) {
-              if (action.getCodePointAt(i) != buffer[i]) {
-                continue next;
-              }
-            }
-            prefixes++;
-          }
+    return IntBuffer.wrap(toArray()).asReadOnlyBuffer();
+  }
+
+  private int[] toArray() {
+    int[] buffer = new int[size];
+    for (int i = 0;i < size;i++) {
+      buffer[i] = pending[(head + i) & (pending.length - 1)];
+    }
+    return buffer;
+  }
+
+  private void ensureCapacity(int length) {
+    if (size + length > pending.length) {
+      int capacity = pending.length;
+      while (capacity < size + length) {
+        capacity <<= 1;
+      }
+      int[] tmp = toArray();
+      pending = new int[capacity];
+      System.arraycopy(tmp, 0, pending, 0, tmp.length);
+      head = 0;
+    }
+  }
+
+  private KeyEvent match() {
+    if (!matched) {
+      pasteContinues = false;
+      if (size == 0) {
+        match = null;
+      } else if (bracketedPaste && (pasting || isPasteStart())) {
+        match = matchPaste();
+      } else {
+        match = match(bindings.match(pending, head, pending.length - 1, size));
+        if (match != null) {
+          matchLength = match.length();
         }
       }
-      if (candidate == null) {
-        if (prefixes == 0) {
-          // TODO 不是特殊指令
-          final int c = buffer[0];
-          return new KeyEventSupport() {
-            @Override
-            public int getCodePointAt(int index) throws IndexOutOfBoundsException {
-              if (index != 0) {
-                throw new IndexOutOfBoundsException("Wrong index " + index);
-              }
-              return c;
-            }
-            @Override
-            public int length() {
-              return 1;
-            }
-            @Override
-            public String toString() {
-              return "key:" + c;
-            }
-          };
+      matched = true;
+    }
+    return match;
+  }
+
+  private KeyEvent match(KeyEvent candidate) {
+    if (candidate == null) {
+      // TODO 不是特殊指令
+      return CodePointEvent.of(pending[head]);
+    } else if (candidate == KeyTrie.PREFIX) {
+      return expired > 0 ? CodePointEvent.of(pending[head]) : null;
+    } else {
+      return candidate;
+    }
+  }
+
+  /**
+   * @return true when the pending code points start with the marker or with a prefix of the marker
+   */
+  private boolean startsWith(int[] marker) {
+    int length = Math.min(size, marker.length);
+    for (int i = 0;i < length;i++) {
+      if (pending[(head + i) & (pending.length - 1)] != marker[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return true when the pending code points start a paste, a prefix of the paste start that expired is decoded
+   *         with the bindings
+   */
+  private boolean isPasteStart() {
+    return startsWith(PASTE_START) && (expired == 0 || size >= PASTE_START.length);
+  }
+
+  /**
+   * Match a paste starting at the head, the search of the paste end resumes where the previous search stopped.
+   *
+   * @return the paste event or null when the paste is not complete
+   */
+  private KeyEvent matchPaste() {
+    int mask = pending.length - 1;
+    int start = pasting ? 0 : PASTE_START.length;
+    int from = Math.max(start, pasteScan);
+    next:
+    for (int i = from;i + PASTE_END.length <= size;i++) {
+      for (int j = 0;j < PASTE_END.length;j++) {
+        if (pending[(head + i + j) & mask] != PASTE_END[j]) {
+          continue next;
         }
-      } else {
-        return candidate;
       }
+      matchLength = i + PASTE_END.length;
+      return paste(start, i);
+    }
+    // The end marker may start in the last code points
+    pasteScan = Math.max(start, size - PASTE_END.length + 1);
+    if (expired > 0) {
+      // The end was not received in time
+      matchLength = Math.max(start, Math.min(expired, size));
+      return paste(start, matchLength);
+    }
+    if (pasteScan - start >= MAX_PASTE_LENGTH) {
+      // Decode what cannot be part of the end marker, the rest of the paste follows
+      int end = pasteScan;
+      if (pending[(head + end - 1) & mask] == '\r' && end - 1 > start) {
+        // Keep a \r\n line break in the same event
+        end--;
+      }
+      pasteContinues = true;
+      matchLength = end;
+      return paste(start, end);
     }
     return null;
   }
 
+  /**
+   * Create a paste event with the pending code points between {@code from} and {@code to}, terminals send line
+   * breaks as {@code \r} or {@code \r\n}, they are translated to {@code \n}.
+   */
+  private KeyEvent paste(int from, int to) {
+    int mask = pending.length - 1;
+    int[] text = new int[to - from];
+    int length = 0;
+    int prev = -1;
+    for (int j = from;j < to;j++) {
+      int codePoint = pending[(head + j) & mask];
+      if (codePoint == '\r') {
+        text[length++] = '\n';
+      } else if (codePoint != '\n' || prev != '\r') {
+        text[length++] = codePoint;
+      }
+      prev = codePoint;
+    }
+    return new PasteEvent(length == text.length ? text : Arrays.copyOf(text, length));
+  }
+
   @Override
   public void remove() {
     throw new UnsupportedOperationException("remove");
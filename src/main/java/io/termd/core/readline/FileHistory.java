@@ -0,0 +1,340 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import io.termd.core.util.Logging;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link History} persisted in a file, usually one file per user shared by the readline instances of the
+ * sessions of this user.<p/>
+ *
+ * The file contains one UTF-8 record per line, the {@code \n} and the {@code \} chars of a line are escaped with a
+ * {@code \}. When the history is created the file is read backward from the end by growing chunks until the
+ * history capacity is reached, so only the recent lines are decoded regardless of the file size.<p/>
+ *
+ * The added lines are appended to the file by a writer thread and never by the calling thread, the lines added
+ * while the writer is busy are appended together and synced once. The writer thread terminates when it has been idle
+ * for a few seconds. When the file exceeds its max size, the writer rewrites it in place with the most recent records
+ * that fit in half of the max size, so the file is never renamed nor deleted.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class FileHistory extends History {
+
+  /**
+   * The default max size of the file.
+   */
+  public static final long DEFAULT_MAX_FILE_SIZE = 1024 * 1024;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int CHUNK_SIZE = 8 * 1024;
+
+  private final File file;
+  private final long maxFileSize;
+  private final ThreadPoolExecutor writer;
+  private final ConcurrentLinkedQueue<int[]> pending = new ConcurrentLinkedQueue<int[]>();
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private final AtomicBoolean closed = new AtomicBoolean();
+  private FileChannel channel;
+
+  /**
+   * Create a file history with the default capacity and max file size.
+   *
+   * @param file the file
+   */
+  public FileHistory(File file) throws IOException {
+    this(file, DEFAULT_CAPACITY, DEFAULT_MAX_FILE_SIZE);
+  }
+
+  /**
+   * Create a file history and load the most recent lines of the file.
+   *
+   * @param file the file, it is created when it does not exist
+   * @param capacity the max number of lines kept in memory
+   * @param maxFileSize the file size that triggers the compaction of the file
+   */
+  public FileHistory(File file, int capacity, long maxFileSize) throws IOException {
+    super(capacity);
+    if (maxFileSize < 1) {
+      throw new IllegalArgumentException("Invalid max file size " + maxFileSize);
+    }
+    this.file = file;
+    this.maxFileSize = maxFileSize;
+    this.channel = new RandomAccessFile(file, "rw").getChannel();
+    try {
+      set(load(channel, capacity));
+      // Terminate the last record if it was partially written
+      long size = channel.size();
+      ByteBuffer last = ByteBuffer.allocate(1);
+      if (size > 0 && channel.read(last, size - 1) == 1 && last.get(0) != '\n') {
+        channel.write(ByteBuffer.wrap(new byte[]{'\n'}), size);
+      }
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    this.writer = new ThreadPoolExecutor(1, 1, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+        new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "termd-history-" + FileHistory.this.file.getName());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    this.writer.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * @return the file
+   */
+  public File file() {
+    return file;
+  }
+
+  @Override
+  public void add(int[] line) {
+    super.add(line);
+    if (closed.get()) {
+      return;
+    }
+    pending.add(line);
+    if (scheduled.compareAndSet(false, true)) {
+      try {
+        writer.execute(new Runnable() {
+          @Override
+          public void run() {
+            write();
+          }
+        });
+      } catch (RejectedExecutionException ignore) {
+        // Closed concurrently
+      }
+    }
+  }
+
+  /**
+   * Wait until the lines added so far are written to the file, this does nothing once the history is closed.
+   */
+  public void flush() throws Exception {
+    if (closed.get()) {
+      return;
+    }
+    Future<?> future;
+    try {
+      future = submitWrite();
+    } catch (RejectedExecutionException ignore) {
+      // Closed concurrently
+      return;
+    }
+    future.get();
+  }
+
+  /**
+   * Write the pending lines and close the file, the lines added after are not persisted. Closing an already
+   * closed history does nothing.
+   */
+  public void close() throws Exception {
+    if (!closed.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      submitWrite().get();
+    } finally {
+      writer.shutdown();
+      writer.awaitTermination(10, TimeUnit.SECONDS);
+      channel.close();
+    }
+  }
+
+  private Future<?> submitWrite() {
+    return writer.submit(new Runnable() {
+      @Override
+      public void run() {
+        write();
+      }
+    });
+  }
+
+  private void write() {
+    scheduled.set(false);
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    int[] line;
+    while ((line = pending.poll()) != null) {
+      encode(line, buffer);
+    }
+    if (buffer.size() == 0) {
+      return;
+    }
+    try {
+      channel.write(ByteBuffer.wrap(buffer.toByteArray()), channel.size());
+      channel.force(false);
+      if (channel.size() > maxFileSize) {
+        compact();
+      }
+    } catch (IOException e) {
+      Logging.logUndeclaredIoError(e);
+    }
+  }
+
+  /**
+   * Rewrite the file in place with the most recent records that fit in half of the max file size. The records are
+   * copied from the end of the file to its beginning, the two regions do not overlap since the file is larger than
+   * the max size, then the file is truncated.
+   */
+  private void compact() throws IOException {
+    long size = channel.size();
+    ByteBuffer tail = ByteBuffer.allocate((int) Math.min(size, maxFileSize / 2));
+    long position = size - tail.capacity();
+    while (tail.hasRemaining()) {
+      if (channel.read(tail, position + tail.position()) < 0) {
+        break;
+      }
+    }
+    tail.flip();
+    // Skip the partial record
+    if (position > 0) {
+      while (tail.hasRemaining() && tail.get() != '\n') {
+        // Skip
+      }
+    }
+    long length = tail.remaining();
+    while (tail.hasRemaining()) {
+      channel.write(tail, length - tail.remaining());
+    }
+    channel.force(false);
+    channel.truncate(length);
+    channel.force(false);
+  }
+
+  /**
+   * Load the most recent records of a file, the file is read backward by growing chunks until enough records are
+   * read.
+   *
+   * @return the lines, the most recent line first
+   */
+  static List<int[]> load(FileChannel channel, int max) throws IOException {
+    List<int[]> lines = new ArrayList<int[]>();
+    long size = channel.size();
+    byte[] data = new byte[0];
+    long position = size;
+    int records = 0;
+    int chunkSize = CHUNK_SIZE;
+    // One more line separator than the wanted records, so the first record read is complete
+    while (position > 0 && records <= max) {
+      int length = (int) Math.min(Math.min(chunkSize, position), Integer.MAX_VALUE - 8 - data.length);
+      if (length <= 0) {
+        // Read at most 2GB
+        break;
+      }
+      position -= length;
+      ByteBuffer chunk = ByteBuffer.allocate(length + data.length);
+      chunk.limit(length);
+      while (chunk.hasRemaining()) {
+        if (channel.read(chunk, position + chunk.position()) < 0) {
+          throw new IOException("Unexpected end of file");
+        }
+      }
+      chunk.limit(chunk.capacity());
+      chunk.put(data);
+      data = chunk.array();
+      for (int i = 0;i < length;i++) {
+        if (data[i] == '\n') {
+          records++;
+        }
+      }
+      chunkSize = chunkSize < Integer.MAX_VALUE / 2 ? chunkSize * 2 : Integer.MAX_VALUE;
+    }
+    int end = data.length;
+    if (end > 0 && data[end - 1] == '\n') {
+      end--;
+    }
+    while (end > 0 && lines.size() < max) {
+      int start = end;
+      while (start > 0 && data[start - 1] != '\n') {
+        start--;
+      }
+      if (start == 0 && position > 0) {
+        // The beginning of a record that was not read
+        break;
+      }
+      if (start < end) {
+        lines.add(decode(data, start, end));
+      }
+      end = start - 1;
+    }
+    return lines;
+  }
+
+  private static void encode(int[] line, ByteArrayOutputStream out) {
+    StringBuilder sb = new StringBuilder(line.length + 1);
+    for (int codePoint : line) {
+      switch (codePoint) {
+        case '\\':
+          sb.append("\\\\");
+          break;
+        case '\n':
+          sb.append("\\n");
+          break;
+        default:
+          sb.appendCodePoint(codePoint);
+      }
+    }
+    sb.append('\n');
+    byte[] bytes = sb.toString().getBytes(UTF_8);
+    out.write(bytes, 0, bytes.length);
+  }
+
+  private static int[] decode(byte[] data, int start, int end) {
+    String s = new String(data, start, end - start, UTF_8);
+    int[] line = new int[s.codePointCount(0, s.length())];
+    int length = 0;
+    boolean escaping = false;
+    for (int i = 0;i < s.length();) {
+      int codePoint = s.codePointAt(i);
+      i += Character.charCount(codePoint);
+      if (escaping) {
+        line[length++] = codePoint == 'n' ? '\n' : codePoint;
+        escaping = false;
+      } else if (codePoint == '\\') {
+        escaping = true;
+      } else {
+        line[length++] = codePoint;
+      }
+    }
+    return length == line.length ? line : Arrays.copyOf(line, length);
+  }
+}
@@ -25,10 +25,16 @@ class FunctionEvent extends KeyEventSupport {
 
   private final String name;
   private final int[] seq;
+  private final Function function;
 
   public FunctionEvent(String name, int[] seq) {
+    this(name, seq, null);
+  }
+
+  FunctionEvent(String name, int[] seq, Function function) {
     this.name = name;
     this.seq = seq;
+    this.function = function;
   }
 
   /**
@@ -38,6 +44,17 @@ class FunctionEvent extends KeyEventSupport {
     return name;
   }
 
+  /**
+   * @return the function resolved when the bindings were compiled or null
+   */
+  Function function() {
+    return function;
+  }
+
+  int[] seq() {
+    return seq;
+  }
+
   @Override
   public int getCodePointAt(int index) throws IndexOutOfBoundsException {
     if (index < 0 || index > seq.length) {
@@ -15,8 +15,18 @@ public class Functions {
      * @return the loaded function
      */
     public static List<Function> loadDefaults() {
+        return loadDefaults(Thread.currentThread().getContextClassLoader());
+    }
+
+    /**
+     * Load the defaults function via the {@link java.util.ServiceLoader} SPI of a class loader.
+     *
+     * @param loader the class loader
+     * @return the loaded function
+     */
+    public static List<Function> loadDefaults(ClassLoader loader) {
         List<Function> functions = new ArrayList<Function>();
-        for (io.termd.core.readline.Function function : Helper.loadServices(Thread.currentThread().getContextClassLoader(), io.termd.core.readline.Function.class)) {
+        for (io.termd.core.readline.Function function : Helper.loadServices(loader, io.termd.core.readline.Function.class)) {
             functions.add(function);
         }
         return functions;
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The lines accepted by {@link Readline}, the most recent line first.<p/>
+ *
+ * A readline creates its own history, a history can also be shared by several readline instances with
+ * {@link Readline#setHistory(History)}. The history is thread safe and does not lock: adding a line claims the
+ * next slot of an array and publishes an immutable window over the array, the array is compacted when it is
+ * full which costs a copy of the history every {@link #capacity()} lines. A {@link #snapshot() snapshot} is a
+ * window and is not affected by the lines added after it was taken.<p/>
+ *
+ * The lines are kept in the compact form of {@link HistoryLines} and are decoded to code points when they
+ * are read.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class History {
+
+  /**
+   * The default capacity.
+   */
+  public static final int DEFAULT_CAPACITY = 500;
+
+  private final int capacity;
+  private final AtomicReference<Window> window;
+  private HistoryIndex index;
+  private HistoryTrie trie;
+
+  public History() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param capacity the max number of lines kept by the history
+   */
+  public History(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Invalid capacity " + capacity);
+    }
+    this.capacity = capacity;
+    this.window = new AtomicReference<Window>(new Window(new AtomicReferenceArray<byte[]>(capacity * 2), 0, 0, 0));
+  }
+
+  /**
+   * @return the max number of lines kept by the history
+   */
+  public int capacity() {
+    return capacity;
+  }
+
+  /**
+   * @return the number of lines
+   */
+  public int size() {
+    return window.get().size();
+  }
+
+  /**
+   * Add a line as the most recent line, the oldest line is discarded when the history is full.
+   *
+   * @param line the line
+   */
+  public void add(int[] line) {
+    if (line == null) {
+      throw new NullPointerException("No null line accepted");
+    }
+    byte[] bytes = HistoryLines.encode(line);
+    while (true) {
+      Window current = window.get();
+      if (current.end == current.lines.length()) {
+        // Compact the lines at the beginning of a new array
+        AtomicReferenceArray<byte[]> lines = new AtomicReferenceArray<byte[]>(capacity * 2);
+        int size = current.size();
+        for (int i = 0;i < size;i++) {
+          lines.set(i, current.lines.get(current.start + i));
+        }
+        window.compareAndSet(current, new Window(lines, 0, size, current.startSeq()));
+      } else if (current.lines.compareAndSet(current.end, null, bytes)) {
+        // The slot is claimed, publish it unless another thread already did
+        window.compareAndSet(current, current.next(capacity));
+        return;
+      } else {
+        // Another thread claimed the slot, help it to publish it
+        window.compareAndSet(current, current.next(capacity));
+      }
+    }
+  }
+
+  /**
+   * Replace the lines of the history.
+   *
+   * @param lines the lines, the most recent line first
+   */
+  public void set(Collection<int[]> lines) {
+    int size = Math.min(lines.size(), capacity);
+    AtomicReferenceArray<byte[]> array = new AtomicReferenceArray<byte[]>(capacity * 2);
+    int index = size;
+    for (int[] line : lines) {
+      if (index == 0) {
+        break;
+      }
+      array.set(--index, HistoryLines.encode(line));
+    }
+    // The new lines get new sequence numbers
+    window.set(new Window(array, 0, size, window.get().endSeq()));
+  }
+
+  /**
+   * Remove all the lines.
+   */
+  public void clear() {
+    set(new ArrayList<int[]>());
+  }
+
+  /**
+   * @return an immutable view of the current lines, the most recent line first
+   */
+  public List<int[]> snapshot() {
+    return window.get();
+  }
+
+  /**
+   * @return the current window
+   */
+  Window window() {
+    return window.get();
+  }
+
+  /**
+   * @return the substring index of the lines, it is created on first use
+   */
+  synchronized HistoryIndex index() {
+    if (index == null) {
+      index = new HistoryIndex(this);
+    }
+    return index;
+  }
+
+  /**
+   * @return the prefix trie of the lines, it is created on first use
+   */
+  synchronized HistoryTrie trie() {
+    if (trie == null) {
+      trie = new HistoryTrie(this);
+    }
+    return trie;
+  }
+
+  /**
+   * @return a modifiable view of the history, the most recent line first, modifying the view replaces the lines
+   *         of the history
+   */
+  List<int[]> asList() {
+    return new AbstractList<int[]>() {
+      @Override
+      public int[] get(int index) {
+        return window.get().get(index);
+      }
+      @Override
+      public int size() {
+        return window.get().size();
+      }
+      @Override
+      public int[] set(int index, int[] element) {
+        List<int[]> copy = new ArrayList<int[]>(window.get());
+        int[] prev = copy.set(index, element);
+        History.this.set(copy);
+        return prev;
+      }
+      @Override
+      public void add(int index, int[] element) {
+        if (index == 0) {
+          History.this.add(element);
+        } else {
+          List<int[]> copy = new ArrayList<int[]>(window.get());
+          copy.add(index, element);
+          History.this.set(copy);
+        }
+      }
+      @Override
+      public int[] remove(int index) {
+        List<int[]> copy = new ArrayList<int[]>(window.get());
+        int[] prev = copy.remove(index);
+        History.this.set(copy);
+        return prev;
+      }
+      @Override
+      public void clear() {
+        History.this.clear();
+      }
+    };
+  }
+
+  /**
+   * An immutable window over the lines array, the lines of the window are never modified. A line is decoded
+   * each time it is read.<p/>
+   *
+   * Each line added to the history has a sequence number that is never reused, the sequence number of the
+   * line at the index {@code i} of the array is {@code base + i}.
+   */
+  static class Window extends AbstractList<int[]> {
+
+    private final AtomicReferenceArray<byte[]> lines;
+    private final int start;
+    private final int end;
+    private final long base;
+
+    Window(AtomicReferenceArray<byte[]> lines, int start, int end, long base) {
+      this.lines = lines;
+      this.start = start;
+      this.end = end;
+      this.base = base;
+    }
+
+    Window next(int capacity) {
+      return new Window(lines, Math.max(start, end + 1 - capacity), end + 1, base);
+    }
+
+    /**
+     * @return the sequence number of the oldest line
+     */
+    long startSeq() {
+      return base + start;
+    }
+
+    /**
+     * @return the sequence number following the most recent line
+     */
+    long endSeq() {
+      return base + end;
+    }
+
+    /**
+     * @return the encoded line with the specified sequence number
+     */
+    byte[] bytes(long seq) {
+      return lines.get((int) (seq - base));
+    }
+
+    @Override
+    public int[] get(int index) {
+      if (index < 0 || index >= end - start) {
+        throw new IndexOutOfBoundsException("Wrong index " + index);
+      }
+      return HistoryLines.decode(lines.get(end - 1 - index));
+    }
+
+    @Override
+    public int size() {
+      return end - start;
+    }
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A substring index of the lines of a {@link History}: for each trigram of the UTF-8 encoded lines, the index
+ * keeps the ascending sequence numbers of the lines containing it.<p/>
+ *
+ * A search looks up the trigrams of the query, walks the shortest postings from the most recent line and checks
+ * each candidate line, the queries shorter than a trigram check the lines one by one. UTF-8 is self synchronizing
+ * so a byte match is a code point match.<p/>
+ *
+ * The index is updated when it is searched with the lines added since the previous search, it is rebuilt when
+ * the discarded lines outnumber the current lines of the history.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+final class HistoryIndex {
+
+  private final History history;
+  private final Map<Integer, Postings> postings = new HashMap<Integer, Postings>();
+  private long base;
+  private long indexed;
+
+  HistoryIndex(History history) {
+    this.history = history;
+  }
+
+  /**
+   * Search the most recent line containing the query.
+   *
+   * @param query the UTF-8 encoded query
+   * @param before the search considers the lines with a sequence number lower than this number
+   * @return the sequence number of the line or {@code -1}
+   */
+  synchronized long search(byte[] query, long before) {
+    History.Window window = history.window();
+    update(window);
+    long start = window.startSeq();
+    before = Math.min(before, window.endSeq());
+    if (query.length < 3) {
+      for (long seq = before - 1;seq >= start;seq--) {
+        if (contains(window.bytes(seq), query)) {
+          return seq;
+        }
+      }
+      return -1;
+    }
+    Postings shortest = null;
+    for (int i = 0;i + 3 <= query.length;i++) {
+      Postings p = postings.get(trigram(query, i));
+      if (p == null) {
+        return -1;
+      }
+      if (shortest == null || p.size < shortest.size) {
+        shortest = p;
+      }
+    }
+    for (int i = shortest.lastBefore(before - base);i >= 0;i--) {
+      long seq = base + shortest.values[i];
+      if (seq < start) {
+        break;
+      }
+      if (contains(window.bytes(seq), query)) {
+        return seq;
+      }
+    }
+    return -1;
+  }
+
+  private void update(History.Window window) {
+    long start = window.startSeq();
+    long end = window.endSeq();
+    if (start - base > end - start) {
+      postings.clear();
+      base = start;
+      indexed = start;
+    }
+    for (long seq = Math.max(indexed, start);seq < end;seq++) {
+      add(window.bytes(seq), (int) (seq - base));
+    }
+    indexed = end;
+  }
+
+  private void add(byte[] line, int value) {
+    for (int i = 0;i + 3 <= line.length;i++) {
+      Integer key = trigram(line, i);
+      Postings p = postings.get(key);
+      if (p == null) {
+        postings.put(key, p = new Postings());
+      }
+      p.add(value);
+    }
+  }
+
+  private static int trigram(byte[] bytes, int index) {
+    return ((bytes[index] & 0xFF) << 16) | ((bytes[index + 1] & 0xFF) << 8) | (bytes[index + 2] & 0xFF);
+  }
+
+  static boolean contains(byte[] line, byte[] query) {
+    next:
+    for (int i = 0;i + query.length <= line.length;i++) {
+      for (int j = 0;j < query.length;j++) {
+        if (line[i + j] != query[j]) {
+          continue next;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * The ascending values of the lines containing a trigram.
+   */
+  private static class Postings {
+
+    private int[] values = new int[2];
+    private int size;
+
+    void add(int value) {
+      // A line containing the trigram several times is added once
+      if (size > 0 && values[size - 1] == value) {
+        return;
+      }
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    /**
+     * @return the index of the last value lower than the specified value or {@code -1}
+     */
+    int lastBefore(long value) {
+      int low = 0;
+      int high = size;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (values[mid] < value) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low - 1;
+    }
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The compact form of the lines of a {@link History}: a line is encoded in UTF-8 and interned, so a command
+ * typed by several sessions or several times is stored once. The interned lines are weakly referenced and are
+ * discarded when no history holds them anymore.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+final class HistoryLines {
+
+  private static final ConcurrentHashMap<Key, Key> interned = new ConcurrentHashMap<Key, Key>();
+  private static final ReferenceQueue<byte[]> collected = new ReferenceQueue<byte[]>();
+
+  /**
+   * @return the interned UTF-8 encoding of the line
+   */
+  static byte[] encode(int[] line) {
+    return intern(utf8(line));
+  }
+
+  /**
+   * @return the code points of an encoded line
+   */
+  static int[] decode(byte[] bytes) {
+    int length = 0;
+    for (byte b : bytes) {
+      if ((b & 0xC0) != 0x80) {
+        length++;
+      }
+    }
+    int[] line = new int[length];
+    int index = 0;
+    for (int i = 0;i < bytes.length;) {
+      int b = bytes[i++] & 0xFF;
+      int codePoint;
+      if (b < 0x80) {
+        codePoint = b;
+      } else if (b < 0xE0) {
+        codePoint = ((b & 0x1F) << 6) | (bytes[i++] & 0x3F);
+      } else if (b < 0xF0) {
+        codePoint = ((b & 0x0F) << 12) | ((bytes[i++] & 0x3F) << 6) | (bytes[i++] & 0x3F);
+      } else {
+        codePoint = ((b & 0x07) << 18) | ((bytes[i++] & 0x3F) << 12) | ((bytes[i++] & 0x3F) << 6) | (bytes[i++] & 0x3F);
+      }
+      line[index++] = codePoint;
+    }
+    return line;
+  }
+
+  /**
+   * @return the UTF-8 encoding of the line, it is not interned
+   */
+  static byte[] utf8(int[] line) {
+    int length = 0;
+    for (int codePoint : line) {
+      if (codePoint < 0x80) {
+        length++;
+      } else if (codePoint < 0x800) {
+        length += 2;
+      } else if (codePoint < 0x10000) {
+        length += 3;
+      } else {
+        length += 4;
+      }
+    }
+    byte[] bytes = new byte[length];
+    int index = 0;
+    for (int codePoint : line) {
+      if (codePoint < 0x80) {
+        bytes[index++] = (byte) codePoint;
+      } else if (codePoint < 0x800) {
+        bytes[index++] = (byte) (0xC0 | (codePoint >> 6));
+        bytes[index++] = (byte) (0x80 | (codePoint & 0x3F));
+      } else if (codePoint < 0x10000) {
+        bytes[index++] = (byte) (0xE0 | (codePoint >> 12));
+        bytes[index++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        bytes[index++] = (byte) (0x80 | (codePoint & 0x3F));
+      } else {
+        bytes[index++] = (byte) (0xF0 | (codePoint >> 18));
+        bytes[index++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        bytes[index++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        bytes[index++] = (byte) (0x80 | (codePoint & 0x3F));
+      }
+    }
+    return bytes;
+  }
+
+  private static byte[] intern(byte[] bytes) {
+    // Discard the keys of the collected lines
+    Key key;
+    while ((key = (Key) collected.poll()) != null) {
+      interned.remove(key);
+    }
+    key = new Key(bytes, collected);
+    while (true) {
+      Key existing = interned.putIfAbsent(key, key);
+      if (existing == null) {
+        return bytes;
+      }
+      byte[] value = existing.get();
+      if (value != null) {
+        return value;
+      }
+      // Collected meanwhile
+      interned.remove(existing, existing);
+    }
+  }
+
+  private static class Key extends WeakReference<byte[]> {
+
+    private final int hash;
+
+    Key(byte[] bytes, ReferenceQueue<byte[]> queue) {
+      super(bytes, queue);
+      this.hash = Arrays.hashCode(bytes);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj == this) {
+        return true;
+      }
+      if (obj instanceof Key) {
+        Key that = (Key) obj;
+        if (hash != that.hash) {
+          return false;
+        }
+        byte[] bytes = get();
+        return bytes != null && Arrays.equals(bytes, that.get());
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  private HistoryLines() {
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import java.util.Arrays;
+
+/**
+ * A prefix trie of the lines of a {@link History} providing the autosuggestion of a line: each node keeps the
+ * most recent line extending its prefix and its sequence, so a suggestion costs a walk of the prefix regardless of
+ * the history size.<p/>
+ *
+ * The trie is updated when it is queried with the lines added since the previous query, it is rebuilt when the
+ * discarded lines outnumber the current lines of the history. Until then a node can still refer to a line
+ * discarded from the history, such line is not suggested since the older lines extending the same prefix are
+ * discarded too. The multi-line lines are not suggested.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+final class HistoryTrie {
+
+  private final History history;
+  private Node root = new Node();
+  private long base;
+  private long indexed;
+
+  HistoryTrie(History history) {
+    this.history = history;
+  }
+
+  /**
+   * Suggest the end of a line.
+   *
+   * @param prefix the code points of the line
+   * @param length the length of the line
+   * @return the code points completing the line to the most recent matching line or null
+   */
+  synchronized int[] suggest(int[] prefix, int length) {
+    History.Window window = history.window();
+    update(window);
+    Node node = root;
+    for (int i = 0;i < length && node != null;i++) {
+      node = node.child(prefix[i]);
+    }
+    if (node == null || node.line == null || node.seq < window.startSeq()) {
+      return null;
+    }
+    int[] line = HistoryLines.decode(node.line);
+    return Arrays.copyOfRange(line, length, line.length);
+  }
+
+  private void update(History.Window window) {
+    long start = window.startSeq();
+    long end = window.endSeq();
+    if (start - base > end - start) {
+      root = new Node();
+      base = start;
+      indexed = start;
+    }
+    for (long seq = Math.max(indexed, start);seq < end;seq++) {
+      add(seq, window.bytes(seq));
+    }
+    indexed = end;
+  }
+
+  private void add(long seq, byte[] bytes) {
+    int[] line = HistoryLines.decode(bytes);
+    for (int codePoint : line) {
+      if (codePoint == '\n') {
+        return;
+      }
+    }
+    // The line is the most recent line of the nodes of its strict prefixes
+    Node node = root;
+    for (int codePoint : line) {
+      node.seq = seq;
+      node.line = bytes;
+      node = node.getOrCreate(codePoint);
+    }
+  }
+
+  private static class Node {
+
+    private int[] keys;
+    private Node[] children;
+    private int size;
+    private long seq;
+    private byte[] line;
+
+    Node child(int codePoint) {
+      for (int i = 0;i < size;i++) {
+        if (keys[i] == codePoint) {
+          return children[i];
+        }
+      }
+      return null;
+    }
+
+    Node getOrCreate(int codePoint) {
+      Node child = child(codePoint);
+      if (child == null) {
+        if (keys == null) {
+          keys = new int[1];
+          children = new Node[1];
+        } else if (size == keys.length) {
+          keys = Arrays.copyOf(keys, size * 2);
+          children = Arrays.copyOf(children, size * 2);
+        }
+        child = new Node();
+        keys[size] = codePoint;
+        children[size++] = child;
+      }
+      return child;
+    }
+  }
+}
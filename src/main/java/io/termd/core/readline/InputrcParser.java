@@ -109,8 +109,7 @@ public abstract class InputrcParser {
   }
 
   public static Keymap create() {
-    InputStream inputrc = InputrcParser.class.getResourceAsStream("inputrc");
-    return new Keymap(inputrc);
+    return Keymap.getDefault();
   }
 
   static int[] parseKeySeq(String keyseq) {
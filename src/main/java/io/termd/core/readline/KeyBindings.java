@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The compiled bindings of a {@link Keymap} and a set of {@link Function}s.<p/>
+ *
+ * The function events of the keymap are resolved to their function when the bindings are compiled, so
+ * {@link Readline} applies a function without looking it up by name. Compiled bindings are immutable and can
+ * be shared by any number of {@link Readline} instances, the {@link #getDefault() default bindings} are
+ * compiled once from the default keymap and the default functions.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public final class KeyBindings {
+
+  /**
+   * @return the bindings of the {@link Keymap#getDefault() default keymap} and the
+   *         {@link Functions#loadDefaults(ClassLoader) default functions} of the termd class loader
+   */
+  public static KeyBindings getDefault() {
+    return DefaultBindings.BINDINGS;
+  }
+
+  private static class DefaultBindings {
+    // Not the context class loader of the thread that happens to initialize the class first
+    private static final KeyBindings BINDINGS = compile(Keymap.getDefault(),
+        Functions.loadDefaults(KeyBindings.class.getClassLoader()));
+  }
+
+  /**
+   * Compile the bindings of a keymap with a set of functions, when several functions have the same name the
+   * last one wins.
+   *
+   * @param keymap the keymap
+   * @param functions the functions
+   * @return the compiled bindings
+   */
+  public static KeyBindings compile(Keymap keymap, Iterable<Function> functions) {
+    return new KeyBindings(new ArrayList<KeyEvent>(keymap.bindings), Collections.<String, Function>emptyMap(), functions);
+  }
+
+  private final List<KeyEvent> keys;
+  private final Map<String, Function> functions;
+  final KeyTrie trie;
+
+  private KeyBindings(List<KeyEvent> keys, Map<String, Function> base, Iterable<Function> functions) {
+    Map<String, Function> map = new HashMap<String, Function>();
+    map.put(Readline.ACCEPT_LINE.name(), Readline.ACCEPT_LINE);
+    map.put(Readline.ACCEPT_AUTOSUGGESTION.name(), Readline.ACCEPT_AUTOSUGGESTION);
+    map.put(ReverseSearch.FUNCTION.name(), ReverseSearch.FUNCTION);
+    map.putAll(base);
+    for (Function function : functions) {
+      map.put(function.name(), function);
+    }
+    List<KeyEvent> resolved = new ArrayList<KeyEvent>(keys.size());
+    for (KeyEvent key : keys) {
+      if (key instanceof FunctionEvent) {
+        FunctionEvent event = (FunctionEvent) key;
+        Function function = map.get(event.name());
+        if (function != event.function()) {
+          key = new FunctionEvent(event.name(), event.seq(), function);
+        }
+      }
+      resolved.add(key);
+    }
+    this.keys = resolved;
+    this.functions = map;
+    this.trie = KeyTrie.compile(resolved);
+  }
+
+  /**
+   * Compile new bindings with the same keymap and additional functions.
+   *
+   * @param functions the functions to add
+   * @return the new bindings
+   */
+  public KeyBindings withFunctions(Iterable<Function> functions) {
+    return new KeyBindings(keys, this.functions, functions);
+  }
+
+  /**
+   * @param name the function name
+   * @return the function or null when there is no such function
+   */
+  public Function getFunction(String name) {
+    return functions.get(name);
+  }
+}
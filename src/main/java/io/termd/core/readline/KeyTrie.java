@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable prefix trie of key events compiled from the bindings of a {@link Keymap}, a match costs time
+ * proportional to the length of the key sequence instead of the number of bindings.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+final class KeyTrie {
+
+  /**
+   * The result of a match that needs more input to be decided.
+   */
+  static final KeyEvent PREFIX = new KeyEventSupport() {
+    @Override
+    public int getCodePointAt(int index) throws IndexOutOfBoundsException {
+      throw new IndexOutOfBoundsException("Wrong index " + index);
+    }
+    @Override
+    public int length() {
+      return 0;
+    }
+  };
+
+  private static final int[] NO_KEYS = new int[0];
+  private static final KeyTrie[] NO_CHILDREN = new KeyTrie[0];
+
+  /**
+   * Compile the bindings, when several bindings have the same key sequence the last one wins.
+   *
+   * @param bindings the bindings
+   * @return the root of the trie
+   */
+  static KeyTrie compile(List<KeyEvent> bindings) {
+    KeyTrie root = new KeyTrie();
+    for (KeyEvent binding : bindings) {
+      int length = binding.length();
+      if (length > 0) {
+        KeyTrie node = root;
+        for (int i = 0;i < length;i++) {
+          node = node.getOrCreate(binding.getCodePointAt(i));
+        }
+        node.event = binding;
+      }
+    }
+    return root;
+  }
+
+  // Sorted keys and their children
+  private int[] keys = NO_KEYS;
+  private KeyTrie[] children = NO_CHILDREN;
+  private KeyEvent event;
+
+  private KeyTrie() {
+  }
+
+  private KeyTrie getOrCreate(int key) {
+    int index = Arrays.binarySearch(keys, key);
+    if (index >= 0) {
+      return children[index];
+    }
+    index = -(index + 1);
+    KeyTrie child = new KeyTrie();
+    int[] newKeys = new int[keys.length + 1];
+    KeyTrie[] newChildren = new KeyTrie[children.length + 1];
+    System.arraycopy(keys, 0, newKeys, 0, index);
+    System.arraycopy(children, 0, newChildren, 0, index);
+    newKeys[index] = key;
+    newChildren[index] = child;
+    System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+    System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+    keys = newKeys;
+    children = newChildren;
+    return child;
+  }
+
+  private KeyTrie child(int key) {
+    int index = Arrays.binarySearch(keys, key);
+    return index >= 0 ? children[index] : null;
+  }
+
+  /**
+   * Match the longest binding that is a prefix of the sequence.
+   *
+   * @param seq the sequence, its first code point is at index {@code (head + i) & mask}
+   * @param head the index of the first code point
+   * @param mask the mask applied to indexes
+   * @param length the number of code points in the sequence
+   * @return the matched binding, {@link #PREFIX} when the sequence is a proper prefix of a binding or null
+   *         when no binding matches
+   */
+  KeyEvent match(int[] seq, int head, int mask, int length) {
+    KeyEvent candidate = null;
+    KeyTrie node = this;
+    for (int i = 0;i < length;i++) {
+      node = node.child(seq[(head + i) & mask]);
+      if (node == null) {
+        return candidate;
+      }
+      if (node.event != null) {
+        candidate = node.event;
+      }
+    }
+    return candidate != null ? candidate : PREFIX;
+  }
+}
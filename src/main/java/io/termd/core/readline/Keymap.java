@@ -29,21 +29,32 @@ import java.util.List;
  */
 public class Keymap {
 
+  /**
+   * Create a keymap configured from the default <i>inputrc</i> file, the file is parsed once and each call
+   * returns a new keymap initialized with its bindings.
+   *
+   * @return the default keymap
+   */
   public static Keymap getDefault() {
-    InputStream inputrc = null;
-    try {
-        inputrc = Keymap.class.getResourceAsStream("inputrc");
-    } finally {
-        if (inputrc != null) {
-            try {
-                inputrc.close();
-            } catch (IOException e) {
-                // ignore
-            }
+    return new Keymap(DefaultBindings.BINDINGS);
+  }
+
+  private static class DefaultBindings {
+
+    private static final List<KeyEvent> BINDINGS;
+
+    static {
+      InputStream inputrc = Keymap.class.getResourceAsStream("inputrc");
+      try {
+        BINDINGS = new Keymap(inputrc).bindings;
+      } finally {
+        try {
+          inputrc.close();
+        } catch (IOException e) {
+          // ignore
         }
+      }
     }
-
-    return new Keymap(inputrc);
   }
 
   final List<KeyEvent> bindings;
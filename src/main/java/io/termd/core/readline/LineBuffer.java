@@ -17,20 +17,27 @@
 package io.termd.core.readline;
 
 import io.termd.core.function.Consumer;
+import io.termd.core.util.IntSliceBuilder;
+import io.termd.core.util.IntSliceConsumer;
 import io.termd.core.util.Vector;
 import io.termd.core.util.Helper;
 import io.termd.core.util.Wcwidth;
 
-import java.util.Arrays;
-
 /**
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
 public class LineBuffer {
 
-  private int[] data;
+  private static final int[] ERASE_LINE = { '\033', '[', 'K' };
+  private static final int[] GLITCH_CORRECTION = { ' ', '\r' };
+
+  private int[] data; // The content with a gap at [gapStart,gapEnd[
+  private int gapStart;
+  private int gapEnd;
   private int cursor;
   private int size;
+  private final WrapIndex index = new WrapIndex();
+  private Update update;
 
   public LineBuffer() {
     this(1000);
@@ -38,23 +45,34 @@ public class LineBuffer {
 
   public LineBuffer(int cap) {
       data = new int[cap];
+      gapEnd = cap;
   }
 
   private LineBuffer(LineBuffer that) {
     data = that.data.clone();
+    gapStart = that.gapStart;
+    gapEnd = that.gapEnd;
     cursor = that.cursor;
     size = that.size;
+    index.set(that.index);
   }
 
   public int[] toArray() {
-    return Arrays.copyOf(data, size);
+    int[] array = new int[size];
+    System.arraycopy(data, 0, array, 0, gapStart);
+    System.arraycopy(data, gapEnd, array, gapStart, size - gapStart);
+    return array;
   }
 
   public int getAt(int index) {
     if (index < 0 | index >= size) {
       throw new IndexOutOfBoundsException();
     }
-    return data[index];
+    return charAt(index);
+  }
+
+  private int charAt(int index) {
+    return index < gapStart ? data[index] : data[index + gapEnd - gapStart];
   }
 
   /**
@@ -76,6 +94,33 @@ public class LineBuffer {
     return this;
   }
 
+  /**
+   * Insert the content of another buffer at the current cursor position.
+   *
+   * @param buffer the buffer to insert
+   * @return this object
+   */
+  public LineBuffer insert(LineBuffer buffer) {
+    if (buffer == this) {
+      buffer = copy();
+    }
+    int length = buffer.size;
+    moveGap(cursor);
+    ensureGap(length);
+    System.arraycopy(buffer.data, 0, data, gapStart, buffer.gapStart);
+    System.arraycopy(buffer.data, buffer.gapEnd, data, gapStart + buffer.gapStart, length - buffer.gapStart);
+    for (int i = 0;i < buffer.index.headCount();i++) {
+      index.pushHead(cursor + buffer.index.headOffset(i));
+    }
+    for (int i = buffer.index.tailCount() - 1;i >= 0;i--) {
+      index.pushHead(cursor + buffer.index.tailOffset(i, length));
+    }
+    gapStart += length;
+    cursor += length;
+    size += length;
+    return this;
+  }
+
   public LineBuffer insert(Integer... codePoints) {
     for (int cp : codePoints) {
       insert(cp);
@@ -91,29 +136,65 @@ public class LineBuffer {
    * @throws IllegalArgumentException when an illegal character is inserted
    */
   public LineBuffer insert(int cp) {
-    int w = Wcwidth.of(cp);
-    if (w == -1) {
-      if (cp != '\n') {
-        throw new IllegalArgumentException("LineBuffer can only contain \\n control char");
+    // Printable ascii is the common case and does not need a lookup
+    if (cp < 32 || cp >= 127) {
+      int w = Wcwidth.of(cp);
+      if (w == -1) {
+        if (cp != '\n') {
+          throw new IllegalArgumentException("LineBuffer can only contain \\n control char");
+        }
+      } else if (w != 1) {
+        throw new IllegalArgumentException("LineBuffer cannot contain chars of width!=1 for the moment");
       }
-    } else if (w != 1) {
-      throw new IllegalArgumentException("LineBuffer cannot contain chars of width!=1 for the moment");
     }
-    if (cursor < size) {
-      System.arraycopy(data, cursor, data, cursor + 1, size - cursor);
+    moveGap(cursor);
+    ensureGap(1);
+    data[gapStart++] = cp;
+    if (cp == '\n') {
+      index.pushHead(cursor);
     }
-    data[cursor++] = cp;
+    cursor++;
     size++;
-    if (size >= data.length) {
-        resize();
-    }
     return this;
   }
 
-  private void resize() {
-      int[] tmpData = new int[data.length * 2];
-      System.arraycopy(this.data, 0, tmpData, 0, data.length);
-      this.data = tmpData;
+  /**
+   * Move the gap to the specified offset, the breaks crossed by the gap move from the head to the tail
+   * of the index or the other way around.
+   */
+  private void moveGap(int offset) {
+    if (offset < gapStart) {
+      while (index.headCount() > 0 && index.headOffset(index.headCount() - 1) >= offset) {
+        index.pushTail(index.popHead(), size);
+      }
+      int length = gapStart - offset;
+      System.arraycopy(data, offset, data, gapEnd - length, length);
+      gapStart -= length;
+      gapEnd -= length;
+    } else if (offset > gapStart) {
+      while (index.tailCount() > 0 && index.tailOffset(index.tailCount() - 1, size) < offset) {
+        index.pushHead(index.popTail(size));
+      }
+      int length = offset - gapStart;
+      System.arraycopy(data, gapEnd, data, gapStart, length);
+      gapStart += length;
+      gapEnd += length;
+    }
+  }
+
+  /**
+   * Ensure the gap can hold the specified number of code points.
+   */
+  private void ensureGap(int length) {
+    if (gapEnd - gapStart < length) {
+      int capacity = Math.max(data.length * 2, size + length + 1);
+      int[] tmp = new int[capacity];
+      int tail = data.length - gapEnd;
+      System.arraycopy(data, 0, tmp, 0, gapStart);
+      System.arraycopy(data, gapEnd, tmp, capacity - tail, tail);
+      data = tmp;
+      gapEnd = capacity - tail;
+    }
   }
 
   public LineStatus.Ext insertEscaped(int... codePoints) {
@@ -200,12 +281,20 @@ public class LineBuffer {
   public int delete(int delta) {
     if (delta > 0) {
       delta = Math.min(delta, size - cursor);
-      System.arraycopy(data, cursor + delta, data, cursor, size - cursor + delta);
+      moveGap(cursor);
+      while (index.tailCount() > 0 && index.tailOffset(index.tailCount() - 1, size) < cursor + delta) {
+        index.popTail(size);
+      }
+      gapEnd += delta;
       size -= delta;
       return delta;
     } else if (delta < 0) {
       delta = - Math.min(- delta, cursor);
-      System.arraycopy(data, cursor, data, cursor + delta, size - cursor);
+      moveGap(cursor);
+      while (index.headCount() > 0 && index.headOffset(index.headCount() - 1) >= cursor + delta) {
+        index.popHead();
+      }
+      gapStart += delta;
       size += delta;
       cursor += delta;
       return - delta;
@@ -218,8 +307,19 @@ public class LineBuffer {
     return size;
   }
 
+  /**
+   * Truncate the buffer to the specified size, the buffer cannot grow.
+   *
+   * @param size the new size
+   */
   public void setSize(int size) {
-    this.size = size >= 0 ? size : 0;
+    size = size >= 0 ? size : 0;
+    if (size < this.size) {
+      moveGap(size);
+      index.clearTail();
+      gapEnd = data.length;
+      this.size = size;
+    }
     if (cursor > size) {
       cursor = size;
     }
@@ -242,9 +342,29 @@ public class LineBuffer {
     return new LineBuffer(this);
   }
 
+  /**
+   * Make this buffer a copy of another buffer, the content array is reused when it is large enough.
+   */
+  private void set(LineBuffer that) {
+    if (data.length < that.data.length) {
+      data = new int[that.data.length];
+    }
+    int tail = that.data.length - that.gapEnd;
+    System.arraycopy(that.data, 0, data, 0, that.gapStart);
+    System.arraycopy(that.data, that.gapEnd, data, data.length - tail, tail);
+    gapStart = that.gapStart;
+    gapEnd = data.length - tail;
+    cursor = that.cursor;
+    size = that.size;
+    index.set(that.index);
+  }
+
   public void clear() {
     size = 0;
     cursor = 0;
+    gapStart = 0;
+    gapEnd = data.length;
+    index.clear();
   }
 
   public int moveCursor(int delta) {
@@ -256,7 +376,7 @@ public class LineBuffer {
   public String toString() {
     StringBuilder sb = new StringBuilder();
     for (int i = 0; i < size; i++) {
-      sb.appendCodePoint(data[i]);
+      sb.appendCodePoint(charAt(i));
     }
     return sb.toString();
   }
@@ -274,21 +394,26 @@ public class LineBuffer {
 
   /**
    * Compute the position of the char at the specified {@literal offset} of this line buffer given a
-   * {@literal width} and a relative {@literal start} position.
+   * {@literal width} and a relative {@literal start} position. The position is located with the line breaks
+   * and the rows indexed for the width, so it does not scan the buffer.
    *
    * @param width the screen width
    * @return the height
    */
   public Vector getPosition(int offset, int width) {
+    if (offset < 0) {
+      throw new IndexOutOfBoundsException("Offset cannot be negative");
+    }
     if (offset > size) {
       throw new IndexOutOfBoundsException("Offset cannot bebe greater than the buffer size");
     }
-    return Helper.computePosition(data, new Vector(0, 0), offset, width);
+    index.locate(offset, size, width);
+    return new Vector(index.column, index.row);
   }
 
   private int findEndOfLine(int offset) {
     while (offset < size) {
-      int c = data[offset];
+      int c = charAt(offset);
       int w = Wcwidth.of(c);
       if (w == -1) {
         if (c == '\n') {
@@ -303,7 +428,30 @@ public class LineBuffer {
   }
 
   public void update(LineBuffer dst, Consumer<int[]> out, int width) {
-    new Update(out, width).perform(dst);
+    IntSliceBuilder builder = new IntSliceBuilder();
+    update(dst, builder, width);
+    if (builder.length() > 0) {
+      if (out instanceof IntSliceConsumer) {
+        ((IntSliceConsumer) out).accept(builder.slice());
+      } else {
+        out.accept(builder.toArray());
+      }
+    }
+  }
+
+  /**
+   * Update this buffer to the destination buffer and append to the builder the code points that update the
+   * screen accordingly, this buffer becomes a copy of the destination buffer.
+   *
+   * @param dst the destination buffer
+   * @param out the builder
+   * @param width the screen width
+   */
+  public void update(LineBuffer dst, IntSliceBuilder out, int width) {
+    if (update == null) {
+      update = new Update();
+    }
+    update.perform(dst, out, width);
   }
 
   // The update algorithm encapsulated in an inner class
@@ -313,20 +461,22 @@ public class LineBuffer {
   // todo : issue existing chars for moving right instead of cursor left movement
   private class Update {
 
-    private final Consumer<int[]> out;
-    private final int width;
+    private IntSliceBuilder out;
+    private int width;
     private int scrCol, scrRow; // The current screen cursor position
     private int srcIdx, srcCol, srcRow; // The source state
     private int dstIdx, dstCol, dstRow; // The destination state
+    private int posCol, posRow; // The last computed position
+
+    public void perform(LineBuffer dst, IntSliceBuilder out, int width) {
 
-    public Update(Consumer<int[]> out, int width) {
       this.out = out;
       this.width = width;
-      this.scrCol = getCursorPosition(width).x();
-      this.scrRow = getCursorPosition(width).y();
-    }
-
-    public void perform(LineBuffer dst) {
+      locate(LineBuffer.this, cursor);
+      scrCol = posCol;
+      scrRow = posRow;
+      srcIdx = srcCol = srcRow = 0;
+      dstIdx = dstCol = dstRow = 0;
 
       while (dstIdx < dst.size) {
 
@@ -335,13 +485,13 @@ public class LineBuffer {
 
         // Handle one dest line at a time
         while (dstIdx < eol) {
-          int c = dst.data[dstIdx];
+          int c = dst.charAt(dstIdx);
           int w = Wcwidth.of(c);
           if (w != 1) {
             throw new UnsupportedOperationException();
           }
-          if (srcIdx < size && new Vector(srcCol, srcRow).equals(new Vector(dstCol, dstRow))) {
-            if (data[srcIdx] == dst.data[dstIdx]) {
+          if (srcIdx < size && srcCol == dstCol && srcRow == dstRow) {
+            if (charAt(srcIdx) == c) {
               dstCol += w;
               if (dstCol == width) {
                 dstCol = 0;
@@ -349,7 +499,7 @@ public class LineBuffer {
               }
             } else {
               moveCursor(dstCol, dstRow);
-              out.accept(new int[]{c});
+              out.append(c);
               dstCol += w;
               if (dstCol == width) {
                 dstCol = 0;
@@ -362,7 +512,7 @@ public class LineBuffer {
           } else {
             moveCursor(dstCol, dstRow);
             dstIdx++;
-            out.accept(new int[]{c});
+            out.append(c);
             dstCol += w;
             if (dstCol == width) {
               dstCol = 0;
@@ -376,7 +526,7 @@ public class LineBuffer {
 
         // Glitch correction if needed
         if (needGlitchCorrection && dstCol == 0) {
-          out.accept(new int[]{' ','\r'});
+          out.append(GLITCH_CORRECTION);
         }
 
         // Remove extra chars if needed
@@ -387,13 +537,13 @@ public class LineBuffer {
           int _col = srcCol, _row = srcRow;
           if (ensure(dstCol, dstRow)) {
             moveCursor(_col, _row);
-            out.accept(new int[]{'\033','[', 'K'});
+            out.append(ERASE_LINE);
           }
         }
 
         // We may need to issue some \n after we are done
         while (scrRow < dstRow) {
-          out.accept(new int[]{'\n'});
+          out.append('\n');
           scrRow++;
           scrCol = 0;
         }
@@ -405,11 +555,11 @@ public class LineBuffer {
         int _row = srcRow;
         int count = 0;
         while (srcIdx < size) {
-          int c = data[srcIdx++];
+          int c = charAt(srcIdx++);
           if (c == '\n') {
             if (count > 0) {
               moveCursor(_col, _row);
-              out.accept(new int[]{'\033', '[', 'K'});
+              out.append(ERASE_LINE);
               count = 0;
             }
             _col = srcCol = 0;
@@ -424,7 +574,7 @@ public class LineBuffer {
             if (srcCol == width) {
               if (count > 0) {
                 moveCursor(_col, _row);
-                out.accept(new int[]{'\033', '[', 'K'});
+                out.append(ERASE_LINE);
                 count = 0;
                 _col = srcCol = 0;
                 _row = ++srcRow;
@@ -437,17 +587,27 @@ public class LineBuffer {
         }
         if (count > 0) {
           moveCursor(_col, _row);
-          out.accept(new int[]{'\033', '[', 'K'});
+          out.append(ERASE_LINE);
         }
       }
 
       // Move cursor to initial position
-      moveCursor(dst.getCursorPosition(width).x(), dst.getCursorPosition(width).y());
+      locate(dst, dst.cursor);
+      moveCursor(posCol, posRow);
 
       // Update internal state
-      data = dst.data.clone();
-      cursor = dst.cursor;
-      size = dst.size;
+      set(dst);
+      this.out = null;
+    }
+
+    /**
+     * Compute the position of the char at the specified offset of a buffer like {@link #getPosition} does,
+     * without allocating a vector.
+     */
+    private void locate(LineBuffer buffer, int offset) {
+      buffer.index.locate(offset, buffer.size, width);
+      posCol = buffer.index.column;
+      posRow = buffer.index.row;
     }
 
     /**
@@ -463,7 +623,7 @@ public class LineBuffer {
         if (srcRow > row || (srcRow == row && srcCol >= col)) {
           break;
         }
-        int c = data[srcIdx];
+        int c = charAt(srcIdx);
         int w = Wcwidth.of(c);
         if (w == 1) {
           ret = true;
@@ -484,7 +644,10 @@ public class LineBuffer {
     }
 
     /**
-     * Move the cursor to the specified coordinates, this updates the internal physical cursor.
+     * Move the cursor to the specified coordinates with the shortest sequence, this updates the internal
+     * physical cursor. The column is reached with a carriage return, backspaces, a parameterized
+     * {@code CUF}/{@code CUB}, a carriage return followed by a {@code CUF} or an absolute {@code CHA},
+     * the row with a parameterized {@code CUU}/{@code CUD}.
      *
      * @param col the column
      * @param row the row
@@ -492,29 +655,63 @@ public class LineBuffer {
     private void moveCursor(int col, int row) {
       if (scrCol != col) {
         if (col == 0) {
-          out.accept(new int[]{'\r'});
-          scrCol = 0;
+          out.append('\r');
         } else {
-          while (scrCol != col) {
+          int n = Math.abs(col - scrCol);
+          int relative = scrCol > col ? Math.min(n, csiLength(n)) : csiLength(n);
+          int fromStart = 1 + csiLength(col);
+          int absolute = csiLength(col + 1);
+          if (relative <= fromStart && relative <= absolute) {
             if (scrCol < col) {
-              scrCol++;
-              out.accept(new int[]{'\033','[','1','C'});
+              appendCsi(n, 'C');
+            } else if (n <= csiLength(n)) {
+              for (int i = 0;i < n;i++) {
+                out.append('\b');
+              }
             } else {
-              scrCol--;
-              out.accept(new int[]{'\b'});
+              appendCsi(n, 'D');
             }
+          } else if (fromStart <= absolute) {
+            out.append('\r');
+            appendCsi(col, 'C');
+          } else {
+            appendCsi(col + 1, 'G');
           }
         }
+        scrCol = col;
       }
-      while (scrRow != row) {
-        if (row < scrRow) {
-          scrRow--;
-          out.accept(new int[]{27,'[','1','A'});
-        } else {
-          scrRow++;
-          out.accept(new int[]{27,'[','1','B'});
-        }
+      if (scrRow != row) {
+        appendCsi(Math.abs(row - scrRow), row < scrRow ? 'A' : 'B');
+        scrRow = row;
+      }
+    }
+
+    /**
+     * Append a control sequence with a single numeric parameter.
+     */
+    private void appendCsi(int param, int command) {
+      out.append('\033').append('[');
+      int div = 1;
+      while (div <= param / 10) {
+        div *= 10;
+      }
+      while (div > 0) {
+        out.append('0' + (param / div) % 10);
+        div /= 10;
+      }
+      out.append(command);
+    }
+
+    /**
+     * @return the length of a control sequence with a single numeric parameter
+     */
+    private int csiLength(int param) {
+      int len = 4;
+      while (param >= 10) {
+        param /= 10;
+        len++;
       }
+      return len;
     }
   }
 }
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import io.termd.core.util.Helper;
+import io.termd.core.util.IntSliceBuilder;
+import io.termd.core.util.Wcwidth;
+
+/**
+ * Renders the update of the line of an interaction, the scratch buffers are reused from one render to the other
+ * so a render does not allocate once the buffers are large enough.<p/>
+ *
+ * Appending a char at the end of the line is the most common update, it is rendered by emitting the char
+ * when it does not wrap the line.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+final class LineRenderer {
+
+  private final LineBuffer screen = new LineBuffer();
+  private final LineBuffer target = new LineBuffer();
+  private String prompt;
+  private int[] promptCodePoints;
+  private int promptColumn;
+
+  /**
+   * Render the update of a line from a buffer to another buffer.
+   *
+   * @param prompt the prompt displayed before the line
+   * @param from the buffer currently displayed
+   * @param to the buffer to display
+   * @param width the screen width
+   * @param out the builder receiving the code points updating the screen
+   */
+  void render(String prompt, LineBuffer from, LineBuffer to, int width, IntSliceBuilder out) {
+    setPrompt(prompt);
+    if (isAppend(from, to, width)) {
+      out.append(to.getAt(to.getSize() - 1));
+    } else {
+      load(screen, promptCodePoints, from);
+      load(target, promptCodePoints, to);
+      screen.update(target, out, width);
+    }
+  }
+
+  /**
+   * Render the update of a line when the prompt changes.
+   *
+   * @param fromPrompt the prompt currently displayed
+   * @param from the buffer currently displayed
+   * @param toPrompt the prompt to display
+   * @param to the buffer to display
+   * @param width the screen width
+   * @param out the builder receiving the code points updating the screen
+   */
+  void render(String fromPrompt, LineBuffer from, String toPrompt, LineBuffer to, int width, IntSliceBuilder out) {
+    if (fromPrompt.equals(toPrompt)) {
+      render(toPrompt, from, to, width, out);
+    } else {
+      load(screen, Helper.toCodePoints(fromPrompt), from);
+      setPrompt(toPrompt);
+      load(target, promptCodePoints, to);
+      screen.update(target, out, width);
+    }
+  }
+
+  /**
+   * Compute the column following the end of a line, the column is not wrapped.
+   *
+   * @param prompt the prompt displayed before the line
+   * @param buffer the line
+   * @return the column
+   */
+  int endColumn(String prompt, LineBuffer buffer) {
+    setPrompt(prompt);
+    int size = buffer.getSize();
+    int start = size;
+    while (start > 0 && buffer.getAt(start - 1) != '\n') {
+      start--;
+    }
+    int column = start > 0 ? 0 : promptColumn;
+    for (int i = start;i < size;i++) {
+      column += Math.max(0, Wcwidth.of(buffer.getAt(i)));
+    }
+    return column;
+  }
+
+  private void setPrompt(String prompt) {
+    if (!prompt.equals(this.prompt)) {
+      this.prompt = prompt;
+      promptCodePoints = Helper.toCodePoints(prompt);
+      promptColumn = 0;
+      for (int codePoint : promptCodePoints) {
+        promptColumn = codePoint == '\n' ? 0 : promptColumn + 1;
+      }
+    }
+  }
+
+  private static void load(LineBuffer scratch, int[] prompt, LineBuffer buffer) {
+    scratch.clear();
+    scratch.insert(prompt);
+    scratch.insert(buffer);
+    scratch.setCursor(prompt.length + buffer.getCursor());
+  }
+
+  /**
+   * @return true when the update appends a char at the end of the line that does not wrap the line
+   */
+  private boolean isAppend(LineBuffer from, LineBuffer to, int width) {
+    int size = from.getSize();
+    if (to.getSize() != size + 1 || from.getCursor() != size || to.getCursor() != size + 1) {
+      return false;
+    }
+    int last = to.getAt(size);
+    if (last == '\n') {
+      return false;
+    }
+    for (int i = 0;i < size;i++) {
+      if (from.getAt(i) != to.getAt(i)) {
+        return false;
+      }
+    }
+    // The column after the appended char, counted from the last line break
+    int column = promptColumn + size + 1;
+    for (int i = size - 1;i >= 0;i--) {
+      if (to.getAt(i) == '\n') {
+        column = size - i;
+        break;
+      }
+    }
+    return column % width != 0;
+  }
+}
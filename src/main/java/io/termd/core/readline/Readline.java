@@ -20,15 +20,20 @@ import io.termd.core.function.BiConsumer;
 import io.termd.core.function.Consumer;
 import io.termd.core.tty.TtyConnection;
 import io.termd.core.tty.TtyEvent;
+import io.termd.core.util.IntSlice;
+import io.termd.core.util.IntSliceBuilder;
+import io.termd.core.util.IntSliceConsumer;
 import io.termd.core.util.Logging;
 import io.termd.core.util.Vector;
 import io.termd.core.util.Helper;
+import io.termd.core.util.Wcwidth;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Make this class thread safe as SSH will access this class with different threds [sic].
@@ -43,26 +48,40 @@ public class Readline {
   private static final int MAX_HISTORY_SIZE = 500;
 
   // private final Device device;
-  private final Map<String, Function> functions = new HashMap<String, Function>();
+  private KeyBindings bindings;
   private final EventQueue decoder;
   private Interaction interaction;
   private Vector size;
-  private volatile List<int[]> history;
+  private volatile History history;
+  private boolean bracketedPaste;
+  private boolean autosuggest;
+  private long keyseqTimeout = TimeUnit.MILLISECONDS.toNanos(500);
+  private final IntSliceBuilder above = new IntSliceBuilder();
+  private boolean aboveScheduled;
 
   public Readline(Keymap keymap) {
+    // TODO 添加处理普通行的函数
+    this(KeyBindings.compile(keymap, Collections.<Function>emptyList()));
+  }
+
+  /**
+   * Create a readline with compiled bindings, the bindings can be shared with other readline instances.
+   *
+   * @param bindings the bindings
+   */
+  public Readline(KeyBindings bindings) {
     // https://github.com/alibaba/termd/issues/42
     // this.device = TermInfo.defaultInfo().getDevice("xterm"); // For now use xterm
-    this.decoder = new EventQueue(keymap);
-    this.history = new ArrayList<int[]>();
-    // TODO 添加处理普通行的函数
-    addFunction(ACCEPT_LINE);
+    this.bindings = bindings;
+    this.decoder = new EventQueue(bindings);
+    this.history = new History(MAX_HISTORY_SIZE);
   }
 
   /**
-   * @return the current history
+   * @return a modifiable view of the current history, the most recent line first
    */
   public List<int[]> getHistory() {
-    return history;
+    return history.asList();
   }
 
   /**
@@ -71,6 +90,24 @@ public class Readline {
    * @param history the history
    */
   public void setHistory(List<int[]> history) {
+    History store = new History(MAX_HISTORY_SIZE);
+    store.set(history);
+    this.history = store;
+  }
+
+  /**
+   * @return the history
+   */
+  public History history() {
+    return history;
+  }
+
+  /**
+   * Set the history, the same history can be shared by several readline instances.
+   *
+   * @param history the history
+   */
+  public void setHistory(History history) {
     this.history = history;
   }
 
@@ -81,18 +118,160 @@ public class Readline {
     return size;
   }
 
+  /**
+   * @return true when the terminal is switched to bracketed paste mode while reading a line
+   */
+  public synchronized boolean isBracketedPaste() {
+    return bracketedPaste;
+  }
+
+  /**
+   * Switch the terminal to bracketed paste mode while reading a line, a paste is then inserted at once in the
+   * line buffer and the control chars it contains do not trigger any function.
+   *
+   * @param bracketedPaste true to enable bracketed paste mode
+   * @return this readline
+   */
+  public synchronized Readline setBracketedPaste(boolean bracketedPaste) {
+    this.bracketedPaste = bracketedPaste;
+    decoder.setBracketedPaste(bracketedPaste);
+    return this;
+  }
+
+  /**
+   * @return the time readline waits for the end of a key sequence
+   */
+  public synchronized long getKeyseqTimeout(TimeUnit unit) {
+    return unit.convert(keyseqTimeout, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Set the time readline waits for the end of a key sequence when the typed keys are the beginning of a longer
+   * binding, like a lone {@code ESC} and the {@code ESC[A} sequence of the up arrow. When the time is reached, the
+   * typed keys are handled as literal keys. Like the readline {@code keyseq-timeout} variable, a zero time waits
+   * until more keys are typed, the default time is 500 milliseconds.
+   *
+   * @param timeout the time
+   * @param unit the time unit
+   * @return this readline
+   */
+  public synchronized Readline setKeyseqTimeout(long timeout, TimeUnit unit) {
+    this.keyseqTimeout = unit.toNanos(timeout);
+    return this;
+  }
+
+  /**
+   * @return the bindings of this readline
+   */
+  public synchronized KeyBindings bindings() {
+    return bindings;
+  }
+
   public Readline addFunction(Function function) {
-    functions.put(function.name(), function);
+    return addFunctions(Collections.singletonList(function));
+  }
+
+  /**
+   * Add functions to this readline, the bindings are recompiled with the functions and are not shared anymore.
+   *
+   * @param functions the functions to add
+   * @return this readline
+   */
+  public synchronized Readline addFunctions(Iterable<Function> functions) {
+    bindings = bindings.withFunctions(functions);
+    decoder.setBindings(bindings);
     return this;
   }
 
-  public Readline addFunctions(Iterable<Function> functions) {
-    for (Function function : functions) {
-      addFunction(function);
-    }
+  /**
+   * @return true when the most recent history line extending the line is suggested
+   */
+  public synchronized boolean isAutosuggest() {
+    return autosuggest;
+  }
+
+  /**
+   * Suggest the most recent history line extending the line, the end of the suggested line is displayed dimmed
+   * after the cursor when the cursor is at the end of the line and is accepted by the
+   * {@code accept-autosuggestion} function.
+   *
+   * @param autosuggest true to enable the suggestions
+   * @return this readline
+   */
+  public synchronized Readline setAutosuggest(boolean autosuggest) {
+    this.autosuggest = autosuggest;
     return this;
   }
 
+  /**
+   * Print text above the prompt of the current interaction, for instance the output of a background job.<p/>
+   *
+   * The text printed during the same tick of the connection is written with a single repaint: the prompt rows
+   * are erased, the text is printed and the prompt and the line are repainted with the cursor in place.
+   *
+   * @param text the text, a line break is appended when it does not end with one
+   * @return false when no line is being read, the text is then not printed
+   */
+  public boolean printAbove(String text) {
+    return printAbove(Helper.toCodePoints(text));
+  }
+
+  /**
+   * Print code points above the prompt of the current interaction.
+   *
+   * @see #printAbove(String)
+   */
+  public boolean printAbove(int[] text) {
+    TtyConnection conn;
+    synchronized (this) {
+      if (interaction == null) {
+        return false;
+      }
+      above.append(text);
+      if (text.length == 0 || text[text.length - 1] != '\n') {
+        above.append('\n');
+      }
+      if (aboveScheduled) {
+        return true;
+      }
+      aboveScheduled = true;
+      conn = interaction.conn;
+    }
+    scheduleAbove(conn);
+    return true;
+  }
+
+  private void scheduleAbove(final TtyConnection conn) {
+    conn.execute(new Runnable() {
+      @Override
+      public void run() {
+        printAbove(conn);
+      }
+    });
+  }
+
+  private void printAbove(TtyConnection conn) {
+    Interaction current;
+    int[] text;
+    synchronized (this) {
+      current = interaction;
+      if (current != null && current.pager != null) {
+        // Printed when the listing ends
+        aboveScheduled = false;
+        return;
+      }
+      text = above.toArray();
+      above.clear();
+      aboveScheduled = false;
+    }
+    if (current != null && current.conn == conn) {
+      current.print(text);
+    } else {
+      // The interaction ended meanwhile
+      conn.stdoutHandler().accept(text);
+    }
+  }
+
   /**
    * Cancel the current readline interaction if there one, the request handler is called with {@code null}.
    */
@@ -111,15 +290,76 @@ public class Readline {
     while (true) {
       Interaction handler;
       KeyEvent event;
+      int[] text = null;
       synchronized (this) {
         if (decoder.hasNext() && interaction != null && !interaction.paused) {
           event = decoder.next();
           handler = interaction;
+          // The keys of a search are handled one by one
+          if (handler.search == null && isText(event) && decoder.hasNext() && isText(decoder.peek())) {
+            text = nextText(event);
+          }
         } else {
-          return;
+          handler = interaction != null && interaction.awaitKeyseq() ? interaction : null;
+          event = null;
+        }
+      }
+      if (event == null) {
+        if (handler != null) {
+          handler.conn.schedule(handler.expireKeyseq, handler.keyseqTimeout, TimeUnit.NANOSECONDS);
         }
+        return;
+      }
+      if (text != null) {
+        handler.insert(text);
+      } else {
+        handler.handle(event);
+      }
+    }
+  }
+
+  /**
+   * @return true when the event is inserted in the line buffer
+   */
+  private static boolean isText(KeyEvent event) {
+    if (event instanceof PasteEvent) {
+      return true;
+    }
+    if (event instanceof FunctionEvent) {
+      return false;
+    }
+    if (event.length() == 1) {
+      int codePoint = event.getCodePointAt(0);
+      // Ctrl-C, Ctrl-D and Ctrl-L
+      return codePoint != 3 && codePoint != 4 && codePoint != 12;
+    }
+    return true;
+  }
+
+  /**
+   * Coalesce the text events following the first event, so a burst of typeahead or a paste is inserted
+   * with a single refresh instead of one refresh per key.
+   *
+   * @param first the first event
+   * @return the code points of the text events
+   */
+  private int[] nextText(KeyEvent first) {
+    int[] text = new int[Math.max(16, first.length() * 2)];
+    int size = 0;
+    KeyEvent event = first;
+    while (true) {
+      int length = event.length();
+      if (size + length > text.length) {
+        text = Arrays.copyOf(text, Math.max(text.length * 2, size + length));
+      }
+      for (int i = 0;i < length;i++) {
+        text[size++] = event.getCodePointAt(i);
+      }
+      if (decoder.hasNext() && isText(decoder.peek())) {
+        event = decoder.next();
+      } else {
+        return size == text.length ? text : Arrays.copyOf(text, size);
       }
-      handler.handle(event);
     }
   }
 
@@ -145,6 +385,9 @@ public class Readline {
       interaction = new Interaction(conn, prompt, requestHandler, completionHandler);
     }
     interaction.install();
+    if (interaction.bracketedPaste) {
+      conn.write("\033[?2004h");
+    }
     conn.write(prompt);
     schedulePendingEvent();
   }
@@ -198,9 +441,26 @@ public class Readline {
     private final Map<String, Object> data;
     private final LineBuffer line = new LineBuffer();
     private final LineBuffer buffer = new LineBuffer();
+    private final LineBuffer edit = new LineBuffer();
+    private final LineRenderer renderer = new LineRenderer();
+    private final IntSliceBuilder output = new IntSliceBuilder();
     private int historyIndex = -1;
+    private List<int[]> historySnapshot;
     private String currentPrompt;
     private boolean paused;
+    ReverseSearch search;
+    Completion completion;
+    CompletionPager pager;
+    private final boolean bracketedPaste;
+    private final boolean autosuggest;
+    private int[] suggestion;
+    private boolean suggested;
+    private Vector resized;
+    private long resizedTime;
+    private boolean resizeScheduled;
+    private final long keyseqTimeout;
+    private long keyseqTime;
+    private boolean keyseqScheduled;
 
     private Interaction(
         TtyConnection conn,
@@ -213,6 +473,9 @@ public class Readline {
       this.currentPrompt = prompt;
       this.requestHandler = requestHandler;
       this.completionHandler = completionHandler;
+      this.bracketedPaste = Readline.this.bracketedPaste;
+      this.autosuggest = Readline.this.autosuggest;
+      this.keyseqTimeout = Readline.this.keyseqTimeout;
     }
 
     /**
@@ -230,6 +493,9 @@ public class Readline {
         conn.setSizeHandler(prevSizeHandler);
         conn.setEventHandler(prevEventHandler);
       }
+      if (bracketedPaste) {
+        conn.write("\033[?2004l");
+      }
       // TODO 将输入事件传递给后台处理：-> ...
       //  -> examples.shell.Shell.read -> readline.readline(conn, "$ ", new Consumer<String>()...)
       //  -> 业务逻辑 -> Task.start -> sleep/help/window/.../echo.execute -> conn.write输出到控制台
@@ -239,6 +505,20 @@ public class Readline {
 
     private void handle(KeyEvent event) {
 
+      // The event may write after the line
+      eraseSuggestion();
+
+      // The search handles the keys until it ends
+      if (search != null && search.handle(event)) {
+        return;
+      }
+
+      // A paste is inserted as is
+      if (event instanceof PasteEvent) {
+        insert(((PasteEvent) event).text());
+        return;
+      }
+
       // Very specific behavior that cannot be encapsulated in a function flow
       if (event.length() == 1) {
         if (event.getCodePointAt(0) == 4 && buffer.getSize() == 0) {
@@ -253,7 +533,7 @@ public class Readline {
           line.clear();
           buffer.clear();
           data.clear();
-          historyIndex = -1;
+          setHistoryIndex(-1);
           currentPrompt = prompt;
           conn.stdoutHandler().accept(new int[]{'\n'});
           conn.write(interaction.prompt);
@@ -274,9 +554,13 @@ public class Readline {
       if (event instanceof FunctionEvent) {
         // TODO 处理src/main/resources/io/termd/core/readline/inputrc中定义的特殊指令
         FunctionEvent fname = (FunctionEvent) event;
-        Function function = functions.get(fname.name());
+        Function function = fname.function();
+        if (function == null) {
+          // Event not decoded with the current bindings
+          function = bindings().getFunction(fname.name());
+        }
         if (function != null) {
-          synchronized (this) {
+          synchronized (Readline.this) {
             paused = true;
           }
           // TODO io.termd.core.readline.functions包下的其中一个函数
@@ -288,7 +572,7 @@ public class Readline {
         }
       } else {
         // TODO 只处理输入事件？
-        LineBuffer buf = buffer.copy();
+        LineBuffer buf = edit();
         for (int i = 0;i < event.length();i++) {
           int codePoint = event.getCodePointAt(i);
           try {
@@ -301,49 +585,38 @@ public class Readline {
       }
     }
 
-    void resize(int oldWith, int newWidth) {
-
-      // Erase screen
-      LineBuffer abc = new LineBuffer(buffer.getCapacity());
-      abc.insert(currentPrompt);
-      abc.insert(buffer.toArray());
-      abc.setCursor(currentPrompt.length() + buffer.getCursor());
-
-      // Recompute new cursor
-      Vector pos = abc.getCursorPosition(newWidth);
-      int curWidth = pos.x();
-      int curHeight = pos.y();
-
-      // Recompute new end
-      Vector end = abc.getPosition(abc.getSize(), oldWith);
-      int endHeight = end.y() + end.x() / newWidth;
+    /**
+     * @return the scratch edit buffer loaded with the content of the buffer
+     */
+    private LineBuffer edit() {
+      edit.clear();
+      edit.insert(buffer);
+      edit.setCursor(buffer.getCursor());
+      return edit;
+    }
 
-      // Position at the bottom / right
-      Consumer<int[]> out = conn.stdoutHandler();
-      out.accept(new int[]{'\r'});
-      while (curHeight != endHeight) {
-        if (curHeight > endHeight) {
-          // TODO 光标上移一行
-          out.accept(new int[]{'\033','[','1','A'});
-          curHeight--;
-        } else {
-          out.accept(new int[]{'\n'});
-          curHeight++;
+    /**
+     * Insert text in the buffer with a single refresh, when a code point cannot be inserted the text inserted
+     * so far is refreshed before ringing the bell, as it would be with one refresh per key.
+     *
+     * @param text the code points to insert
+     */
+    private void insert(int[] text) {
+      LineBuffer buf = edit();
+      for (int codePoint : text) {
+        try {
+          buf.insert(codePoint);
+        } catch (IllegalArgumentException e) {
+          // The buffer is a copy of the edit buffer after the refresh
+          refresh(buf);
+          conn.stdoutHandler().accept(new int[]{'\007'});
         }
       }
+      refresh(buf);
+    }
 
-      // Now erase and redraw
-      while (curHeight > 0) {
-        // TODO 清除控制台当前行内容
-        out.accept(new int[]{'\033','[','1','K'});
-        out.accept(new int[]{'\033','[','1','A'});
-        curHeight--;
-      }
-      out.accept(new int[]{'\033','[','1','K'});
-
-      // Now redraw
-      out.accept(Helper.toCodePoints(currentPrompt));
-      refresh(new LineBuffer(), newWidth);
+    Readline readline() {
+      return Readline.this;
     }
 
     public Consumer<Completion> completionHandler() {
@@ -354,8 +627,15 @@ public class Readline {
       return data;
     }
 
+    /**
+     * @return the snapshot of the history taken when the history is browsed, the snapshot is kept until the
+     *         history index is reset so the indexes are not shifted by the lines added meanwhile
+     */
     public List<int[]> history() {
-      return history;
+      if (historySnapshot == null) {
+        historySnapshot = history.snapshot();
+      }
+      return historySnapshot;
     }
 
     public int getHistoryIndex() {
@@ -364,6 +644,9 @@ public class Readline {
 
     public void setHistoryIndex(int historyIndex) {
       this.historyIndex = historyIndex;
+      if (historyIndex == -1) {
+        historySnapshot = null;
+      }
     }
 
     public LineBuffer line() {
@@ -405,36 +688,244 @@ public class Readline {
     }
 
     private void refresh(LineBuffer update, int width) {
-      LineBuffer copy3 = new LineBuffer(update.getCapacity());
-      final List<Integer> codePoints = new LinkedList<Integer>();
-      copy3.insert(Helper.toCodePoints(currentPrompt));
-      copy3.insert(buffer().toArray());
-      copy3.setCursor(currentPrompt.length() + buffer().getCursor());
-      LineBuffer copy2 = new LineBuffer(copy3.getCapacity());
-      copy2.insert(Helper.toCodePoints(currentPrompt));
-      copy2.insert(update.toArray());
-      copy2.setCursor(currentPrompt.length() + update.getCursor());
-      copy3.update(copy2, new Consumer<int[]>() {
-        @Override
-        public void accept(int[] data) {
-          for (int cp : data) {
-            codePoints.add(cp);
+      refresh(currentPrompt, update, width);
+    }
+
+    /**
+     * Refresh the current prompt and buffer with the argument prompt and buffer.
+     *
+     * @param prompt the new prompt
+     * @param update the new buffer
+     */
+    void refresh(String prompt, LineBuffer update) {
+      refresh(prompt, update, size.x());
+    }
+
+    private void refresh(String prompt, LineBuffer update, int width) {
+      output.clear();
+      if (suggested) {
+        // Erase the suggestion after the cursor
+        output.append(ERASE_LINE_END);
+        suggested = false;
+      }
+      renderer.render(currentPrompt, buffer, prompt, update, width, output);
+      currentPrompt = prompt;
+      if (autosuggest) {
+        suggest(update, width);
+      }
+      if (output.length() > 0) {
+        // TODO 将键盘输入回显到控制台
+        IntSlice.adapt(conn.stdoutHandler()).accept(output.slice());
+      }
+      if (update != buffer) {
+        buffer.clear();
+        buffer.insert(update);
+        buffer.setCursor(update.getCursor());
+      }
+    }
+
+    /**
+     * Print text above the prompt in a single write.
+     */
+    private void print(int[] text) {
+      repaint(text, size.x(), size.x());
+    }
+
+    /**
+     * Erase the prompt rows laid out with a width, write text and repaint the prompt and the line with another
+     * width in a single write.
+     */
+    private void repaint(int[] text, int fromWidth, int toWidth) {
+      LineBuffer screen = screen();
+      int row = screen.getCursorPosition(fromWidth).y();
+      output.clear();
+      output.append('\r');
+      if (row > 0) {
+        output.append(Helper.toCodePoints("\033[" + row + "A"));
+      }
+      // Erase the prompt rows and the suggestion
+      output.append(ERASE_SCREEN_END);
+      suggested = false;
+      output.append(text);
+      new LineBuffer().update(screen, output, toWidth);
+      IntSlice.adapt(conn.stdoutHandler()).accept(output.slice());
+    }
+
+    /**
+     * @return a buffer with the prompt and the line
+     */
+    private LineBuffer screen() {
+      int[] prompt = Helper.toCodePoints(currentPrompt);
+      LineBuffer screen = new LineBuffer();
+      screen.insert(prompt);
+      screen.insert(buffer);
+      screen.setCursor(prompt.length + buffer.getCursor());
+      return screen;
+    }
+
+    /**
+     * Handle a new size, when the width change wraps the prompt or the line differently the line is reflowed
+     * once the size has not changed for a short delay, so a window drag repaints the line once. Like readline,
+     * the rows laid out with the previous width are erased before the repaint with the new width. The line is
+     * paused during the repaint like during a function, so the keys received meanwhile are handled after it.
+     */
+    private void resize(Vector dim) {
+      synchronized (Readline.this) {
+        Vector current = size;
+        resized = dim;
+        resizedTime = System.nanoTime();
+        if (resizeScheduled) {
+          return;
+        }
+        if (current == null || current.x() == dim.x() || paused || !wraps(current.x(), dim.x())) {
+          size = dim;
+          return;
+        }
+        resizeScheduled = true;
+      }
+      conn.schedule(reflow, RESIZE_DELAY, TimeUnit.NANOSECONDS);
+    }
+
+    private final Runnable reflow = new Runnable() {
+      @Override
+      public void run() {
+        Vector current;
+        Vector dim;
+        synchronized (Readline.this) {
+          long remaining = RESIZE_DELAY - (System.nanoTime() - resizedTime);
+          if (remaining > 0 && interaction == Interaction.this) {
+            conn.schedule(this, remaining, TimeUnit.NANOSECONDS);
+            return;
+          }
+          resizeScheduled = false;
+          current = size;
+          dim = resized;
+          size = dim;
+          if (interaction != Interaction.this || paused || current.x() == dim.x()) {
+            return;
           }
+          paused = true;
         }
-      }, width);
-      // TODO 将键盘输入回显到控制台
-      conn.stdoutHandler().accept(Helper.convert(codePoints));
-      buffer.clear();
-      buffer.insert(update.toArray());
-      buffer.setCursor(update.getCursor());
+        try {
+          repaint(new int[0], current.x(), dim.x());
+        } finally {
+          resume();
+        }
+      }
+    };
+
+    /**
+     * Wait for the end of the key sequence started by the pending keys, the keys are received since the timer
+     * is started, so the timer does not need to be cancelled when the end of the sequence is received in time.
+     *
+     * @return true when the timer must be started
+     */
+    private boolean awaitKeyseq() {
+      if (keyseqTimeout <= 0 || keyseqScheduled || !decoder.hasPrefix()) {
+        return false;
+      }
+      keyseqScheduled = true;
+      return true;
+    }
+
+    private final Runnable expireKeyseq = new Runnable() {
+      @Override
+      public void run() {
+        CompletionPager listing;
+        synchronized (Readline.this) {
+          // The timeout is measured from the last received keys
+          long remaining = keyseqTimeout - (System.nanoTime() - keyseqTime);
+          if (remaining > 0 && interaction == Interaction.this && decoder.hasPrefix()) {
+            conn.schedule(this, remaining, TimeUnit.NANOSECONDS);
+            return;
+          }
+          keyseqScheduled = false;
+          if (interaction != Interaction.this || !decoder.expire()) {
+            return;
+          }
+          listing = paused ? pager : null;
+        }
+        if (listing != null) {
+          listing.deliver();
+        }
+        deliver();
+      }
+    };
+
+    /**
+     * @return true when the prompt and the line are wrapped at one of the widths
+     */
+    private boolean wraps(int width1, int width2) {
+      LineBuffer screen = screen();
+      int rows = 0;
+      for (int i = 0;i < screen.getSize();i++) {
+        if (screen.getAt(i) == '\n') {
+          rows++;
+        }
+      }
+      return screen.getPosition(screen.getSize(), width1).y() != rows
+          || screen.getPosition(screen.getSize(), width2).y() != rows;
+    }
+
+    /**
+     * Append the suggestion of the updated buffer to the output.
+     */
+    private void suggest(LineBuffer update, int width) {
+      suggestion = null;
+      int size = update.getSize();
+      if (search != null || size == 0 || update.getCursor() != size || line.getSize() > 0) {
+        return;
+      }
+      suggestion = history.trie().suggest(update.toArray(), size);
+      if (suggestion == null) {
+        return;
+      }
+      // Display the part of the suggestion that fits on the cursor row
+      int column = renderer.endColumn(currentPrompt, update);
+      if (column > 0 && column % width == 0) {
+        return;
+      }
+      int available = width - 1 - column % width;
+      int length = 0;
+      int columns = 0;
+      while (length < suggestion.length) {
+        int w = Wcwidth.of(suggestion[length]);
+        if (w < 0 || columns + w > available) {
+          break;
+        }
+        columns += w;
+        length++;
+      }
+      if (columns > 0) {
+        output.append(DIM).append(suggestion, 0, length).append(RESET);
+        output.append(Helper.toCodePoints("\033[" + columns + "D"));
+        suggested = true;
+      }
+    }
+
+    /**
+     * Erase the displayed suggestion, the suggestion can still be accepted.
+     */
+    private void eraseSuggestion() {
+      if (suggested) {
+        conn.stdoutHandler().accept(ERASE_LINE_END);
+        suggested = false;
+      }
     }
 
     public void resume() {
+      boolean print;
       synchronized (Readline.this) {
         if (!paused) {
           throw new IllegalStateException();
         }
         paused = false;
+        // The text printed during a completion listing
+        print = above.length() > 0 && !aboveScheduled;
+        aboveScheduled |= print;
+      }
+      if (print) {
+        scheduleAbove(conn);
       }
       schedulePendingEvent();
     }
@@ -443,13 +934,34 @@ public class Readline {
       prevReadHandler = conn.getStdinHandler();
       prevSizeHandler = conn.getSizeHandler();
       prevEventHandler = conn.getEventHandler();
-      conn.setStdinHandler(new Consumer<int[]>() {
+      conn.setStdinHandler(new IntSliceConsumer() {
         @Override
         public void accept(int[] data) {
+          accept(IntSlice.wrap(data));
+        }
+        @Override
+        public void accept(IntSlice data) {
+          Completion stale = null;
+          CompletionPager listing = null;
           synchronized (Readline.this) {
             // TODO 将输入信息传递给后台处理 -> deliver检查到FunctionEvent类型事件即为后台事件，触发按后台逻辑处理,
             //   如果不是FunctionEvent，直接调用conn.write回显
             decoder.append(data);
+            keyseqTime = System.nanoTime();
+            if (paused && completion != null && completion.isCancellable()) {
+              stale = completion;
+            }
+            if (paused) {
+              listing = pager;
+            }
+          }
+          if (stale != null) {
+            // The user keeps typing
+            stale.cancel();
+          }
+          if (listing != null) {
+            // The listing waits for an answer
+            listing.deliver();
           }
           // TODO 响应控制台输入事件，将检测到的控制台输入字符进行回显，
           deliver();
@@ -459,19 +971,51 @@ public class Readline {
       conn.setSizeHandler(new Consumer<Vector>() {
         @Override
         public void accept(Vector dim) {
-          if (size != null) {
-            // Not supported for now
-            // interaction.resize(size.width(), dim.width());
-          }
-          size = dim;
+          resize(dim);
         }
       });
       conn.setEventHandler(null);
     }
   }
 
+  private void addToHistory(int[] command) {
+    history.add(command);
+  }
+
+  /**
+   * The time a size must not change before the line is reflowed.
+   */
+  private static final long RESIZE_DELAY = TimeUnit.MILLISECONDS.toNanos(50);
+
+  private static final int[] ERASE_LINE_END = { '\033', '[', 'K' };
+  private static final int[] ERASE_SCREEN_END = { '\033', '[', 'J' };
+  private static final int[] DIM = { '\033', '[', '2', 'm' };
+  private static final int[] RESET = { '\033', '[', '0', 'm' };
+
+  // Need to access internal state
+  static final Function ACCEPT_AUTOSUGGESTION = new Function() {
+
+    @Override
+    public String name() {
+      return "accept-autosuggestion";
+    }
+
+    @Override
+    public void apply(Interaction interaction) {
+      LineBuffer buf = interaction.edit();
+      if (buf.getCursor() < buf.getSize()) {
+        // Like forward-char before the end of the line, so it can be bound to the right arrow
+        buf.moveCursor(1);
+      } else if (interaction.suggestion != null) {
+        buf.insert(interaction.suggestion);
+      }
+      interaction.refresh(buf);
+      interaction.resume();
+    }
+  };
+
   // Need to access internal state
-  private final Function ACCEPT_LINE = new Function() {
+  static final Function ACCEPT_LINE = new Function() {
 
     @Override
     public String name() {
@@ -500,7 +1044,7 @@ public class Readline {
         } else {
           String raw = interaction.line.toString();
           if (interaction.line.getSize() > 0) {
-            addToHistory(interaction.line.toArray());
+            interaction.readline().addToHistory(interaction.line.toArray());
           }
           interaction.line.clear();
           interaction.conn.write("\n");
@@ -508,23 +1052,5 @@ public class Readline {
         }
       }
     }
-
-      private void addToHistory(int[] command) {
-          // copy and save. https://github.com/alibaba/termd/issues/44
-          synchronized (Readline.class) {
-              List<int[]> tmp = new ArrayList<int[]>(history.size());
-              // add to first
-              tmp.add(command);
-
-              for (int[] c : history) {
-                  tmp.add(c);
-                  if (tmp.size() >= MAX_HISTORY_SIZE) {
-                      break;
-                  }
-              }
-              history = tmp;
-          }
-      }
-
   };
 }
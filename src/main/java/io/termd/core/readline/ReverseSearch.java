@@ -0,0 +1,208 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import java.util.Arrays;
+
+/**
+ * The incremental reverse search of the history started by the {@code reverse-search-history} function.<p/>
+ *
+ * The typed chars extend the query and the search continues from the current match since a line containing the
+ * extended query also contains the query, {@code reverse-search-history} searches the next older match,
+ * {@code backward-delete-char} shortens the query, {@code Ctrl-G} restores the line and ends the search.
+ * Other keys end the search with the matched line and are then handled as usual. The lines are searched with
+ * the {@link HistoryIndex} of the history so a key does not rescan the history.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+final class ReverseSearch {
+
+  // Need to access internal state
+  static final Function FUNCTION = new Function() {
+
+    @Override
+    public String name() {
+      return "reverse-search-history";
+    }
+
+    @Override
+    public void apply(Readline.Interaction interaction) {
+      interaction.search = new ReverseSearch(interaction);
+      interaction.search.render();
+      interaction.resume();
+    }
+  };
+
+  private final Readline.Interaction interaction;
+  private final History history;
+  private final String prompt;
+  private final LineBuffer original;
+  private int[] query = new int[16];
+  private int length;
+  private long match = -1;
+  private boolean failed;
+
+  private ReverseSearch(Readline.Interaction interaction) {
+    this.interaction = interaction;
+    this.history = interaction.readline().history();
+    this.prompt = interaction.currentPrompt();
+    this.original = copy(interaction.buffer());
+  }
+
+  /**
+   * Handle a key of the search.
+   *
+   * @return false when the search ended and the key must be handled as usual
+   */
+  boolean handle(KeyEvent event) {
+    if (event instanceof PasteEvent) {
+      append(((PasteEvent) event).text());
+      return true;
+    }
+    if (event instanceof FunctionEvent) {
+      String name = ((FunctionEvent) event).name();
+      if (name.equals(FUNCTION.name())) {
+        if (length > 0) {
+          search(match == -1 ? Long.MAX_VALUE : match);
+        }
+        return true;
+      } else if (name.equals("backward-delete-char")) {
+        if (length > 0) {
+          length--;
+          match = -1;
+          search(Long.MAX_VALUE);
+        } else {
+          bell();
+        }
+        return true;
+      }
+      end(false);
+      return false;
+    }
+    int first = event.getCodePointAt(0);
+    if (first == 7) {
+      // Ctrl-G
+      end(true);
+      return true;
+    } else if (first == 27 && event.length() == 1) {
+      end(false);
+      return true;
+    } else if (first < 32 || first == 127) {
+      end(false);
+      return false;
+    }
+    int[] text = new int[event.length()];
+    for (int i = 0;i < text.length;i++) {
+      text[i] = event.getCodePointAt(i);
+    }
+    append(text);
+    return true;
+  }
+
+  private void append(int[] text) {
+    if (length + text.length > query.length) {
+      query = Arrays.copyOf(query, Math.max(query.length * 2, length + text.length));
+    }
+    System.arraycopy(text, 0, query, length, text.length);
+    length += text.length;
+    search(match == -1 ? Long.MAX_VALUE : match + 1);
+  }
+
+  /**
+   * Search the query in the lines older than a line.
+   */
+  private void search(long before) {
+    if (length == 0) {
+      failed = false;
+      render();
+      return;
+    }
+    long seq = history.index().search(HistoryLines.utf8(Arrays.copyOf(query, length)), before);
+    failed = seq == -1 || line(seq) == null;
+    if (failed) {
+      bell();
+    } else {
+      match = seq;
+    }
+    render();
+  }
+
+  private int[] line(long seq) {
+    History.Window window = history.window();
+    if (seq >= window.startSeq() && seq < window.endSeq()) {
+      return HistoryLines.decode(window.bytes(seq));
+    }
+    return null;
+  }
+
+  private void render() {
+    LineBuffer buffer = interaction.buffer();
+    if (match != -1) {
+      int[] line = line(match);
+      if (line != null) {
+        buffer = new LineBuffer();
+        buffer.insert(line);
+        buffer.setCursor(indexOf(line));
+      }
+    }
+    StringBuilder sb = new StringBuilder(failed ? "(failed reverse-i-search)`" : "(reverse-i-search)`");
+    for (int i = 0;i < length;i++) {
+      sb.appendCodePoint(query[i]);
+    }
+    interaction.refresh(sb.append("': ").toString(), buffer);
+  }
+
+  /**
+   * @return the index of the query in the line
+   */
+  private int indexOf(int[] line) {
+    next:
+    for (int i = 0;i + length <= line.length;i++) {
+      for (int j = 0;j < length;j++) {
+        if (line[i + j] != query[j]) {
+          continue next;
+        }
+      }
+      return i;
+    }
+    return 0;
+  }
+
+  /**
+   * End the search and display the prompt again.
+   *
+   * @param restore true to restore the line displayed before the search
+   */
+  private void end(boolean restore) {
+    interaction.search = null;
+    if (match != -1 && !restore) {
+      interaction.setHistoryIndex(-1);
+    }
+    interaction.refresh(prompt, restore ? original : interaction.buffer());
+  }
+
+  private void bell() {
+    interaction.conn.stdoutHandler().accept(new int[]{'\007'});
+  }
+
+  private static LineBuffer copy(LineBuffer buffer) {
+    LineBuffer copy = new LineBuffer();
+    copy.insert(buffer);
+    copy.setCursor(buffer.getCursor());
+    return copy;
+  }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import java.util.Arrays;
+
+/**
+ * The index of the line breaks of a {@link LineBuffer}, it locates the screen position of an offset with a binary
+ * search instead of scanning the buffer.<p/>
+ *
+ * The breaks are split at the gap of the buffer like the content: the head breaks are before the gap and are
+ * stored with their offset, the tail breaks are after the gap and are stored with their distance to the end of the
+ * buffer. An edit at the gap only pushes or pops the break it inserts or deletes and leaves the other breaks
+ * unchanged.<p/>
+ *
+ * Each break also records the rows it spans for the indexed width, counted from the start of the buffer for
+ * the head breaks and from the end of the buffer for the tail breaks. The rows are recomputed when the
+ * index is queried with another width.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+final class WrapIndex {
+
+  private int[] headOffsets = new int[8];  // The offset of the break
+  private int[] headRows = new int[8];     // The row of the line after the break
+  private int headCount;
+  private int[] tailOffsets = new int[8];  // The distance from the break to the end of the buffer
+  private int[] tailRows = new int[8];     // The rows from the line after the break to the end of the buffer
+  private int tailCount;                   // The last break of the buffer is at index 0
+  private int width;                       // The indexed width or 0 when the rows are not computed
+
+  /**
+   * The row of the last located offset.
+   */
+  int row;
+
+  /**
+   * The column of the last located offset.
+   */
+  int column;
+
+  void clear() {
+    headCount = 0;
+    tailCount = 0;
+  }
+
+  void set(WrapIndex that) {
+    if (headOffsets.length < that.headCount) {
+      headOffsets = new int[that.headOffsets.length];
+      headRows = new int[that.headOffsets.length];
+    }
+    if (tailOffsets.length < that.tailCount) {
+      tailOffsets = new int[that.tailOffsets.length];
+      tailRows = new int[that.tailOffsets.length];
+    }
+    System.arraycopy(that.headOffsets, 0, headOffsets, 0, that.headCount);
+    System.arraycopy(that.headRows, 0, headRows, 0, that.headCount);
+    System.arraycopy(that.tailOffsets, 0, tailOffsets, 0, that.tailCount);
+    System.arraycopy(that.tailRows, 0, tailRows, 0, that.tailCount);
+    headCount = that.headCount;
+    tailCount = that.tailCount;
+    width = that.width;
+  }
+
+  int headCount() {
+    return headCount;
+  }
+
+  int tailCount() {
+    return tailCount;
+  }
+
+  /**
+   * @return the offset of a head break, the first break has the index 0
+   */
+  int headOffset(int index) {
+    return headOffsets[index];
+  }
+
+  /**
+   * @return the offset of a tail break, the last break of the buffer has the index 0
+   */
+  int tailOffset(int index, int size) {
+    return size - tailOffsets[index];
+  }
+
+  /**
+   * Add a break after the last head break.
+   */
+  void pushHead(int offset) {
+    if (headCount == headOffsets.length) {
+      headOffsets = Arrays.copyOf(headOffsets, headCount * 2);
+      headRows = Arrays.copyOf(headRows, headCount * 2);
+    }
+    headOffsets[headCount] = offset;
+    if (width > 0) {
+      headRows[headCount] = headRow(headCount, offset);
+    }
+    headCount++;
+  }
+
+  /**
+   * Remove the last head break.
+   *
+   * @return the offset of the break
+   */
+  int popHead() {
+    return headOffsets[--headCount];
+  }
+
+  /**
+   * Add a break before the first tail break.
+   */
+  void pushTail(int offset, int size) {
+    if (tailCount == tailOffsets.length) {
+      tailOffsets = Arrays.copyOf(tailOffsets, tailCount * 2);
+      tailRows = Arrays.copyOf(tailRows, tailCount * 2);
+    }
+    tailOffsets[tailCount] = size - offset;
+    if (width > 0) {
+      tailRows[tailCount] = tailRow(tailCount, size);
+    }
+    tailCount++;
+  }
+
+  /**
+   * Remove the first tail break.
+   *
+   * @return the offset of the break
+   */
+  int popTail(int size) {
+    return size - tailOffsets[--tailCount];
+  }
+
+  /**
+   * Remove the tail breaks.
+   */
+  void clearTail() {
+    tailCount = 0;
+  }
+
+  /**
+   * Locate the screen position of the char at the specified offset, the position is available in the
+   * {@link #row} and {@link #column} fields.
+   *
+   * @param offset the offset
+   * @param size the size of the buffer
+   * @param width the screen width
+   */
+  void locate(int offset, int size, int width) {
+    if (this.width != width) {
+      index(size, width);
+    }
+    int start;
+    int startRow;
+    int index = search(headOffsets, headCount, offset);
+    if (index < headCount) {
+      // Within the head breaks
+      start = index > 0 ? headOffsets[index - 1] + 1 : 0;
+      startRow = index > 0 ? headRows[index - 1] : 0;
+    } else {
+      // After the last head break, find the first tail break that is before the offset
+      index = search(tailOffsets, tailCount, size - offset + 1);
+      if (index < tailCount) {
+        start = size - tailOffsets[index] + 1;
+        startRow = endRow(size) - tailRows[index];
+      } else {
+        start = headCount > 0 ? headOffsets[headCount - 1] + 1 : 0;
+        startRow = headCount > 0 ? headRows[headCount - 1] : 0;
+      }
+    }
+    row = startRow + (offset - start) / width;
+    column = (offset - start) % width;
+  }
+
+  /**
+   * @return the index of the first value greater or equals to the key
+   */
+  private static int search(int[] values, int count, int key) {
+    int low = 0;
+    int high = count;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (values[mid] < key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return the row of the last char of the buffer
+   */
+  private int endRow(int size) {
+    int start = headCount > 0 ? headOffsets[headCount - 1] + 1 : 0;
+    int row = headCount > 0 ? headRows[headCount - 1] : 0;
+    if (tailCount > 0) {
+      return row + (size - tailOffsets[tailCount - 1] - start) / width + 1 + tailRows[tailCount - 1];
+    } else {
+      return row + (size - start) / width;
+    }
+  }
+
+  private int headRow(int index, int offset) {
+    int start = index > 0 ? headOffsets[index - 1] + 1 : 0;
+    int row = index > 0 ? headRows[index - 1] : 0;
+    return row + (offset - start) / width + 1;
+  }
+
+  private int tailRow(int index, int size) {
+    int start = size - tailOffsets[index] + 1;
+    if (index > 0) {
+      return (size - tailOffsets[index - 1] - start) / width + 1 + tailRows[index - 1];
+    } else {
+      return (size - start) / width;
+    }
+  }
+
+  private void index(int size, int width) {
+    this.width = width;
+    for (int i = 0;i < headCount;i++) {
+      headRows[i] = headRow(i, headOffsets[i]);
+    }
+    for (int i = 0;i < tailCount;i++) {
+      tailRows[i] = tailRow(i, size);
+    }
+  }
+}
@@ -16,21 +16,25 @@
 
 package io.termd.core.ssh;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.WriteBufferWaterMark;
 import io.termd.core.function.BiConsumer;
 import io.termd.core.function.Consumer;
 import io.termd.core.io.BinaryDecoder;
-import io.termd.core.io.BinaryEncoder;
 import io.termd.core.tty.TtyConnection;
 import io.termd.core.tty.TtyConnectionSupport;
 import io.termd.core.tty.TtyEvent;
 import io.termd.core.tty.TtyEventDecoder;
-import io.termd.core.tty.TtyOutputMode;
+import io.termd.core.tty.TtyOutputEncoder;
 import io.termd.core.util.Vector;
 import org.apache.sshd.common.channel.PtyMode;
 import org.apache.sshd.common.future.CloseFuture;
 import org.apache.sshd.common.future.SshFutureListener;
 import org.apache.sshd.common.io.IoInputStream;
 import org.apache.sshd.common.io.IoOutputStream;
+import org.apache.sshd.common.io.IoWriteFuture;
 import org.apache.sshd.common.util.buffer.ByteArrayBuffer;
 import org.apache.sshd.server.AsyncCommand;
 import org.apache.sshd.server.ChannelSessionAware;
@@ -45,9 +49,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
+import java.util.ArrayDeque;
 import java.util.EnumSet;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -58,14 +64,25 @@ public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSes
 
   private static final Pattern LC_PATTERN = Pattern.compile("(?:\\p{Alpha}{2}_\\p{Alpha}{2}\\.)?([^@]+)(?:@.+)?");
 
+  /**
+   * SSHD buffers wrap arrays, so the output is encoded in pooled heap buffers.
+   */
+  private static final ByteBufAllocator HEAP_ALLOCATOR = new PooledByteBufAllocator(false);
+
+  /**
+   * The pending output thresholds, the same as the Netty channels.
+   */
+  private static final int HIGH_WATER_MARK = WriteBufferWaterMark.DEFAULT.high();
+  private static final int LOW_WATER_MARK = WriteBufferWaterMark.DEFAULT.low();
+
   private final Consumer<TtyConnection> handler;
   private final Charset defaultCharset;
   private Charset charset;
   private String term;
   private TtyEventDecoder eventDecoder;
   private BinaryDecoder decoder;
-  private Consumer<int[]> stdout;
-  private Consumer<byte[]> out;
+  private TtyOutputEncoder stdout;
+  private Consumer<ByteBuf> out;
   private Vector size = null;
   private Consumer<Vector> sizeHandler;
   private Consumer<String> termHandler;
@@ -75,6 +92,9 @@ public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSes
   private ExitCallback exitCallback;
   private Connection conn;
   private IoOutputStream ioOut;
+  private final AtomicLong pending = new AtomicLong();
+  private final ArrayDeque<ByteBuf> stoppedOutput = new ArrayDeque<ByteBuf>();
+  private volatile boolean blocked;
   private long lastAccessedTime = System.currentTimeMillis();
 
   public TtyCommand(Charset defaultCharset, Consumer<TtyConnection> handler) {
@@ -88,6 +108,7 @@ public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSes
       lastAccessedTime = System.currentTimeMillis();
       // TODO 将从输入设备监听到的数据写入自己的处理队列供后端进行处理
       decoder.write(buf, start, len);
+      restartOutput();
     } else {
       // Data send too early ?
     }
@@ -119,14 +140,62 @@ public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSes
   @Override
   public void setIoOutputStream(final IoOutputStream out) {
     this.ioOut = out;
-    this.out = new Consumer<byte[]>() {
+    this.out = new Consumer<ByteBuf>() {
       @Override
-      public void accept(byte[] bytes) {
-        out.write(new ByteArrayBuffer(bytes));
+      public void accept(ByteBuf buf) {
+        pending.addAndGet(buf.readableBytes());
+        synchronized (stoppedOutput) {
+          if (eventDecoder.isStopped() || !stoppedOutput.isEmpty()) {
+            // Held until the output is restarted, it still counts as pending output
+            stoppedOutput.add(buf);
+          } else {
+            send(buf);
+          }
+        }
       }
     };
   }
 
+  private void send(final ByteBuf buf) {
+    final int size = buf.readableBytes();
+    IoWriteFuture future;
+    try {
+      future = ioOut.write(new ByteArrayBuffer(buf.array(), buf.arrayOffset() + buf.readerIndex(), size));
+    } catch (RuntimeException e) {
+      pending.addAndGet(-size);
+      buf.release();
+      throw e;
+    }
+    // The buffer is retained by the channel until the data is sent
+    future.addListener(new SshFutureListener<IoWriteFuture>() {
+      @Override
+      public void operationComplete(IoWriteFuture future) {
+        buf.release();
+        if (pending.addAndGet(-size) <= LOW_WATER_MARK && blocked) {
+          blocked = false;
+          Consumer<Void> handler = conn.getDrainHandler();
+          if (handler != null) {
+            handler.accept(null);
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Send the output held while the output was stopped by the client.
+   */
+  private void restartOutput() {
+    synchronized (stoppedOutput) {
+      if (!eventDecoder.isStopped()) {
+        ByteBuf buf;
+        while ((buf = stoppedOutput.poll()) != null) {
+          send(buf);
+        }
+      }
+    }
+  }
+
   @Override
   public void setIoErrorStream(IoOutputStream err) {
 
@@ -160,9 +229,16 @@ public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSes
     int veof = getControlChar(env, PtyMode.VEOF, 4);
 
     //
-    eventDecoder = new TtyEventDecoder(vintr, vsusp, veof);
+    eventDecoder = new TtyEventDecoder(vintr, vsusp, veof)
+        .setControlChar(TtyEvent.START, getControlChar(env, PtyMode.VSTART, TtyEvent.START.codePoint()))
+        .setControlChar(TtyEvent.STOP, getControlChar(env, PtyMode.VSTOP, TtyEvent.STOP.codePoint()));
+    // XON/XOFF output flow control requested by the client
+    Integer ixon = env.getPtyModes().get(PtyMode.IXON);
+    if (ixon != null && ixon != 0) {
+      eventDecoder.setEnabled(TtyEvent.START, true).setEnabled(TtyEvent.STOP, true);
+    }
     decoder = new BinaryDecoder(512, charset, eventDecoder);
-    stdout = new TtyOutputMode(new BinaryEncoder(charset, out));
+    stdout = new TtyOutputEncoder(charset, HEAP_ALLOCATOR, out);
     term = env.getEnv().get("TERM");
     conn = new Connection();
 
@@ -173,7 +249,11 @@ public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSes
 
   private int getControlChar(Environment env, PtyMode key, int def) {
     Integer controlChar = env.getPtyModes().get(key);
-    return controlChar != null ? controlChar : def;
+    if (controlChar == null) {
+      return def;
+    }
+    // 255 is the _POSIX_VDISABLE value sent by clients for a disabled control character
+    return controlChar == 255 ? TtyEventDecoder.DISABLED : controlChar;
   }
 
   public void updateSize(Environment env) {
@@ -204,6 +284,12 @@ public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSes
   }
 
   private void close(final int exit) throws IOException {
+    synchronized (stoppedOutput) {
+      ByteBuf buf;
+      while ((buf = stoppedOutput.poll()) != null) {
+        buf.release();
+      }
+    }
     ioOut.close(false).addListener(new SshFutureListener<CloseFuture>() {
       @Override
       public void operationComplete(CloseFuture future) {
@@ -316,6 +402,22 @@ public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSes
       return stdout;
     }
 
+    @Override
+    public boolean isWritable() {
+      if (pending.get() < HIGH_WATER_MARK) {
+        return true;
+      }
+      blocked = true;
+      // The pending writes may have completed meanwhile
+      return pending.get() < HIGH_WATER_MARK;
+    }
+
+    @Override
+    public TtyConnection write(String s) {
+      stdout.write(s);
+      return this;
+    }
+
     @Override
     public void execute(Runnable task) {
       TtyCommand.this.execute(task);
@@ -15,6 +15,9 @@
  */
 package io.termd.core.telnet;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
 import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
@@ -101,13 +104,83 @@ public abstract class TelnetConnection {
 
   protected abstract void send(byte[] data);
 
+  /**
+   * @return false when the data sent is queued above the high water mark of the transport, then
+   *         {@link TelnetHandler#onWritable()} is called once it can be written again, the default implementation
+   *         is always writable
+   */
+  public boolean isWritable() {
+    return true;
+  }
+
+  /**
+   * Discard the buffers sent with {@link #send(ByteBuf)} that are not yet handed to the transport,
+   * the data sent with {@link #send(byte[])} like the option negotiation is never discarded. The default
+   * implementation does nothing.
+   */
+  public void discardOutput() {
+  }
+
+  /**
+   * Send a buffer to the client, the connection becomes responsible for releasing the buffer. The default
+   * implementation copies the buffer and calls {@link #send(byte[])}.
+   *
+   * @param data the data to send
+   */
+  protected void send(ByteBuf data) {
+    send(toBytes(data));
+  }
+
   public void receive(byte[] data) {
-    for (byte b : data) {
-      status.handle(this, b);
+    receive(Unpooled.wrappedBuffer(data));
+  }
+
+  /**
+   * Receive data from the client, the buffer is not released. Runs of plain data are found with a bulk
+   * scan for {@code IAC} and handed to {@link TelnetHandler#onData(byte[], int, int)} without going through
+   * the state machine, which only handles the bytes of the telnet commands.
+   *
+   * @param data the data
+   */
+  public void receive(ByteBuf data) {
+    int index = data.readerIndex();
+    int end = data.writerIndex();
+    while (index < end) {
+      if (status == Status.DATA) {
+        int iac = data.indexOf(index, end, BYTE_IAC);
+        int to = iac == -1 ? end : iac;
+        if (to > index) {
+          flushDataIfNecessary();
+          handleData(data, index, to - index);
+          index = to;
+        }
+        if (iac == -1) {
+          break;
+        }
+      }
+      status.handle(this, data.getByte(index++));
     }
     flushDataIfNecessary();
   }
 
+  /**
+   * Hand a run of plain data to the handler, the run is a view of the buffer when it is backed by an array,
+   * otherwise it is copied by chunks in the {@link #pendingBuffer} that is empty at this point.
+   */
+  private void handleData(ByteBuf data, int index, int length) {
+    if (data.hasArray()) {
+      handler.onData(data.array(), data.arrayOffset() + index, length);
+    } else {
+      while (length > 0) {
+        int chunk = Math.min(length, pendingBuffer.length);
+        data.getBytes(index, pendingBuffer, 0, chunk);
+        handler.onData(pendingBuffer, 0, chunk);
+        index += chunk;
+        length -= chunk;
+      }
+    }
+  }
+
 
   /**
    * Write data to the client, escaping data if necessary or truncating it. The original buffer can
@@ -140,10 +213,38 @@ public abstract class TelnetConnection {
     }
   }
 
+  /**
+   * Write a buffer to the client, escaping data if necessary. The connection becomes responsible for
+   * releasing the buffer.
+   *
+   * @param data the data to write
+   */
+  public final void write(ByteBuf data) {
+    if (sendBinary && data.indexOf(data.readerIndex(), data.writerIndex(), BYTE_IAC) != -1) {
+      write(toBytes(data));
+    } else {
+      send(data);
+    }
+  }
+
+  private static byte[] toBytes(ByteBuf data) {
+    try {
+      byte[] bytes = new byte[data.readableBytes()];
+      data.readBytes(bytes);
+      return bytes;
+    } finally {
+      data.release();
+    }
+  }
+
   protected void onClose() {
     handler.onClose();
   }
 
+  protected void onWritable() {
+    handler.onWritable();
+  }
+
   /**
    * Handle option <code>WILL</code> call back. The implementation will try to find a matching option
    * via the {@code Option#values()} and invoke it's {@link Option#handleWill(TelnetConnection)} method
@@ -259,12 +360,12 @@ public abstract class TelnetConnection {
   }
 
   /**
-   * Flush the {@link #pendingBuffer} buffer to {@link TelnetHandler#onData(byte[])}.
+   * Flush the {@link #pendingBuffer} buffer to {@link TelnetHandler#onData(byte[], int, int)}.
    */
   private void flushData() {
-    byte[] data = Arrays.copyOf(pendingBuffer, pendingLength);
+    int length = pendingLength;
     pendingLength = 0;
-    handler.onData(data);
+    handler.onData(pendingBuffer, 0, length);
   }
 
   enum Status {
@@ -290,6 +391,7 @@ public abstract class TelnetConnection {
       void handle(TelnetConnection session, byte b) {
         if (b == BYTE_IAC) {
           session.appendData((byte)-1);
+          session.status = DATA;
         } else {
           session.flushDataIfNecessary();
           IAC.handle(session, b);
@@ -35,6 +35,11 @@ public class TelnetHandler {
    */
   protected void onClose() {}
 
+  /**
+   * The telnet connection can be written again after {@link TelnetConnection#isWritable()} returned false.
+   */
+  protected void onWritable() {}
+
   /**
    * Process data sent by the client.
    *
@@ -42,6 +47,23 @@ public class TelnetHandler {
    */
   protected void onData(byte[] data) {}
 
+  /**
+   * Process a range of data sent by the client, the range is only valid during the call. The default
+   * implementation copies the range and calls {@link #onData(byte[])}.
+   *
+   * @param data the data
+   * @param offset the range offset
+   * @param length the range length
+   */
+  protected void onData(byte[] data, int offset, int length) {
+    if (offset != 0 || length != data.length) {
+      byte[] copy = new byte[length];
+      System.arraycopy(data, offset, copy, 0, length);
+      data = copy;
+    }
+    onData(data);
+  }
+
   protected void onSize(int width, int height) {}
   protected void onTerminalType(String terminalType) {}
   protected void onCommand(byte command) {}
@@ -16,16 +16,17 @@
 
 package io.termd.core.telnet;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.termd.core.function.BiConsumer;
 import io.termd.core.function.Consumer;
+import io.termd.core.tty.FlowControlledTtyConnection;
 import io.termd.core.tty.ReadBuffer;
 import io.termd.core.tty.TtyEvent;
 import io.termd.core.tty.TtyEventDecoder;
-import io.termd.core.tty.TtyOutputMode;
-import io.termd.core.util.Helper;
+import io.termd.core.tty.TtyOutputEncoder;
 import io.termd.core.util.Vector;
 import io.termd.core.io.BinaryDecoder;
-import io.termd.core.io.BinaryEncoder;
 import io.termd.core.io.TelnetCharset;
 import io.termd.core.tty.TtyConnection;
 
@@ -38,7 +39,7 @@ import java.util.concurrent.TimeUnit;
  *
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
-public final class TelnetTtyConnection extends TelnetHandler implements TtyConnection {
+public final class TelnetTtyConnection extends TelnetHandler implements FlowControlledTtyConnection {
 
   private static final Charset US_ASCII = Charset.forName("US-ASCII");
 
@@ -52,6 +53,9 @@ public final class TelnetTtyConnection extends TelnetHandler implements TtyConne
   private Consumer<Vector> sizeHandler;
   private Consumer<String> termHandler;
   private Consumer<Void> closeHandler;
+  private volatile BiConsumer<TtyEvent, Integer> eventHandler;
+  private volatile boolean discardOnInterrupt;
+  private volatile Consumer<Void> drainHandler;
   protected TelnetConnection conn;
   private final Charset charset;
   private final TtyEventDecoder eventDecoder = new TtyEventDecoder(3, 26, 4);
@@ -60,12 +64,10 @@ public final class TelnetTtyConnection extends TelnetHandler implements TtyConne
     public void execute(Runnable command) {
       TelnetTtyConnection.this.execute(command);
     }
-  });
+  }).setCoalescing(true);
 
   private final BinaryDecoder decoder;
-  private final BinaryEncoder encoder;
-
-  private final Consumer<int[]> stdout;
+  private final TtyOutputEncoder stdout;
   private final Consumer<TtyConnection> handler;
   private long lastAccessedTime = System.currentTimeMillis();
 
@@ -75,14 +77,33 @@ public final class TelnetTtyConnection extends TelnetHandler implements TtyConne
     this.outBinary = outBinary;
     this.handler = handler;
     this.size = new Vector();
-    this.decoder = new BinaryDecoder(512, TelnetCharset.INSTANCE, readBuffer);
-    this.encoder = new BinaryEncoder(charset, new Consumer<byte[]>() {
+    this.decoder = new BinaryDecoder(512, TelnetCharset.INSTANCE, eventDecoder.signals(readBuffer));
+    this.stdout = new TtyOutputEncoder(charset, PooledByteBufAllocator.DEFAULT, new Consumer<ByteBuf>() {
       @Override
-      public void accept(byte[] data) {
+      public void accept(ByteBuf data) {
         conn.write(data);
       }
     });
-    this.stdout = new TtyOutputMode(encoder);
+  }
+
+  /**
+   * @return true when the pending output is discarded on interrupt
+   */
+  public boolean isDiscardOnInterrupt() {
+    return discardOnInterrupt;
+  }
+
+  /**
+   * Discard the output written by other threads and not yet sent when an {@link TtyEvent#INTR},
+   * {@link TtyEvent#QUIT} or {@link TtyEvent#SUSP} event is signaled, like a tty without {@code NOFLSH}, so
+   * the output of an interrupted command stops at once.
+   *
+   * @param discardOnInterrupt true to discard the pending output
+   * @return this connection
+   */
+  public TelnetTtyConnection setDiscardOnInterrupt(boolean discardOnInterrupt) {
+    this.discardOnInterrupt = discardOnInterrupt;
+    return this;
   }
 
   @Override
@@ -119,7 +140,7 @@ public final class TelnetTtyConnection extends TelnetHandler implements TtyConne
   protected void onSendBinary(boolean binary) {
     sendingBinary = binary;
     if (binary) {
-      encoder.setCharset(charset);
+      stdout.setCharset(charset);
     }
     checkAccept();
   }
@@ -139,6 +160,12 @@ public final class TelnetTtyConnection extends TelnetHandler implements TtyConne
     decoder.write(data);
   }
 
+  @Override
+  protected void onData(byte[] data, int offset, int length) {
+    lastAccessedTime = System.currentTimeMillis();
+    decoder.write(data, offset, length);
+  }
+
   @Override
   protected void onOpen(TelnetConnection conn) {
     this.conn = conn;
@@ -223,14 +250,28 @@ public final class TelnetTtyConnection extends TelnetHandler implements TtyConne
 
   @Override
   public BiConsumer<TtyEvent, Integer> getEventHandler() {
-    return eventDecoder.getEventHandler();
+    return eventHandler;
   }
 
   @Override
   public void setEventHandler(BiConsumer<TtyEvent, Integer> handler) {
-    eventDecoder.setEventHandler(handler);
+    eventHandler = handler;
+    eventDecoder.setEventHandler(handler != null ? signalHandler : null);
   }
 
+  private final BiConsumer<TtyEvent, Integer> signalHandler = new BiConsumer<TtyEvent, Integer>() {
+    @Override
+    public void accept(TtyEvent event, Integer cp) {
+      if (discardOnInterrupt && (event == TtyEvent.INTR || event == TtyEvent.QUIT || event == TtyEvent.SUSP)) {
+        conn.discardOutput();
+      }
+      BiConsumer<TtyEvent, Integer> handler = eventHandler;
+      if (handler != null) {
+        handler.accept(event, cp);
+      }
+    }
+  };
+
   @Override
   public Consumer<int[]> getStdinHandler() {
     return eventDecoder.getReadHandler();
@@ -246,6 +287,29 @@ public final class TelnetTtyConnection extends TelnetHandler implements TtyConne
     return stdout;
   }
 
+  @Override
+  public boolean isWritable() {
+    return conn.isWritable();
+  }
+
+  @Override
+  public Consumer<Void> getDrainHandler() {
+    return drainHandler;
+  }
+
+  @Override
+  public void setDrainHandler(Consumer<Void> handler) {
+    drainHandler = handler;
+  }
+
+  @Override
+  protected void onWritable() {
+    Consumer<Void> handler = drainHandler;
+    if (handler != null) {
+      handler.accept(null);
+    }
+  }
+
   @Override
   public void setCloseHandler(Consumer<Void> closeHandler) {
     this.closeHandler = closeHandler;
@@ -275,8 +339,7 @@ public final class TelnetTtyConnection extends TelnetHandler implements TtyConne
 
   @Override
   public TtyConnection write(String s) {
-    int[] codePoints = Helper.toCodePoints(s);
-    stdoutHandler().accept(codePoints);
+    stdout.write(s);
     return this;
   }
 }
@@ -16,21 +16,43 @@
 
 package io.termd.core.telnet.netty;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.EventLoop;
 import io.termd.core.telnet.TelnetConnection;
 import io.termd.core.telnet.TelnetHandler;
 
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * The data sent is kept in a queue owned by the connection and handed to the channel only while the channel is
+ * writable, so the output that was not yet handed to the channel can be discarded.
+ *
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
 public class NettyTelnetConnection extends TelnetConnection {
 
   final ChannelHandlerContext context;
 
+  // The buffers not yet written to the channel
+  private final Queue<Pending> pending = new ConcurrentLinkedQueue<Pending>();
+
+  // The bytes of the pending buffers
+  private final AtomicLong queued = new AtomicLong();
+
+  // Set when the connection was found not writable, so the handler is notified when it is writable again
+  private volatile boolean blocked;
+
+  // Set when the connection is closed after the pending buffers are written, only accessed from the event loop
+  private boolean closing;
+
   public NettyTelnetConnection(TelnetHandler handler, ChannelHandlerContext context) {
     super(handler);
     this.context = context;
@@ -46,19 +68,151 @@ public class NettyTelnetConnection extends TelnetConnection {
     context.channel().eventLoop().schedule(task, delay, unit);
   }
 
-  // Not properly synchronized, but ok for now
   @Override
   protected void send(byte[] data) {
-    context.writeAndFlush(Unpooled.buffer().writeBytes(data));
+    // Never discarded since it carries the telnet protocol bytes
+    enqueue(new Pending(Unpooled.wrappedBuffer(data), false));
+  }
+
+  @Override
+  protected void send(ByteBuf data) {
+    enqueue(new Pending(data, true));
+  }
+
+  private void enqueue(Pending buffer) {
+    queued.addAndGet(buffer.size);
+    pending.add(buffer);
+    EventLoop loop = context.channel().eventLoop();
+    if (loop.inEventLoop()) {
+      drain();
+    } else {
+      loop.execute(new Runnable() {
+        @Override
+        public void run() {
+          drain();
+        }
+      });
+    }
+  }
+
+  /**
+   * Write the pending buffers to the channel while it is writable, this must be called from the event loop.
+   */
+  void drain() {
+    Channel channel = context.channel();
+    if (!channel.isActive()) {
+      discard(false);
+      return;
+    }
+    boolean written = false;
+    Pending buffer;
+    while (channel.isWritable() && (buffer = pending.poll()) != null) {
+      queued.addAndGet(-buffer.size);
+      context.write(buffer.data);
+      written = true;
+    }
+    if (written) {
+      context.flush();
+    }
+    if (closing && pending.isEmpty()) {
+      closing = false;
+      context.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+    }
+    checkWritable();
+  }
+
+  @Override
+  public void discardOutput() {
+    EventLoop loop = context.channel().eventLoop();
+    if (loop.inEventLoop()) {
+      discard(true);
+      checkWritable();
+    } else {
+      loop.execute(new Runnable() {
+        @Override
+        public void run() {
+          discard(true);
+          checkWritable();
+        }
+      });
+    }
+  }
+
+  /**
+   * Release the pending buffers, this must be called from the event loop.
+   *
+   * @param discardable true to release only the discardable buffers
+   */
+  private void discard(boolean discardable) {
+    for (Iterator<Pending> it = pending.iterator();it.hasNext();) {
+      Pending buffer = it.next();
+      if (buffer.discardable || !discardable) {
+        it.remove();
+        queued.addAndGet(-buffer.size);
+        buffer.data.release();
+      }
+    }
+  }
+
+  @Override
+  public boolean isWritable() {
+    if (writable()) {
+      return true;
+    }
+    blocked = true;
+    // The queued writes may have run meanwhile
+    return writable();
+  }
+
+  /**
+   * Notify the handler when the connection was found not writable and is writable again, this must be called
+   * from the event loop.
+   */
+  void checkWritable() {
+    if (blocked && writable()) {
+      blocked = false;
+      onWritable();
+    }
+  }
+
+  private boolean writable() {
+    return queued.get() < context.channel().config().getWriteBufferWaterMark().high();
   }
 
   @Override
   protected void onClose() {
+    // Nothing can be written anymore
+    discard(false);
     super.onClose();
   }
 
   @Override
   public void close() {
-    context.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+    EventLoop loop = context.channel().eventLoop();
+    if (loop.inEventLoop()) {
+      closing = true;
+      drain();
+    } else {
+      loop.execute(new Runnable() {
+        @Override
+        public void run() {
+          closing = true;
+          drain();
+        }
+      });
+    }
+  }
+
+  private static class Pending {
+
+    final ByteBuf data;
+    final int size;
+    final boolean discardable;
+
+    Pending(ByteBuf data, boolean discardable) {
+      this.data = data;
+      this.size = data.readableBytes();
+      this.discardable = discardable;
+    }
   }
 }
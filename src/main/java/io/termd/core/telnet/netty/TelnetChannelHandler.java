@@ -41,10 +41,7 @@ public class TelnetChannelHandler extends ChannelInboundHandlerAdapter {
   public void channelRead(ChannelHandlerContext ctx, Object msg) {
     ByteBuf buf = (ByteBuf) msg;
     try {
-      int size = buf.readableBytes();
-      byte[] data = new byte[size];
-      buf.getBytes(0, data);
-      conn.receive(data);
+      conn.receive(buf);
     } finally {
       buf.release();
     }
@@ -62,6 +59,15 @@ public class TelnetChannelHandler extends ChannelInboundHandlerAdapter {
     this.conn = null;
   }
 
+  @Override
+  public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+    NettyTelnetConnection conn = this.conn;
+    if (conn != null) {
+      conn.drain();
+    }
+    super.channelWritabilityChanged(ctx);
+  }
+
   @Override
   public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
     Logging.logReportedIoError(cause);
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.tty;
+
+import io.termd.core.function.Consumer;
+
+/**
+ * A {@link TtyConnection} reporting when its transport holds too much output. This interface is optional so the
+ * existing connection implementations keep compiling, a producer should check it with {@code instanceof} and write
+ * without pausing otherwise.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public interface FlowControlledTtyConnection extends TtyConnection {
+
+  /**
+   * @return false when the transport holds more output than its high water mark, a producer should then stop
+   *         writing until the {@link #setDrainHandler(Consumer) drain handler} is called
+   */
+  boolean isWritable();
+
+  Consumer<Void> getDrainHandler();
+
+  /**
+   * Set an handler called when the connection becomes writable again after {@link #isWritable()} returned false,
+   * the handler may be called when the connection is not writable anymore, so {@link #isWritable()} should
+   * be checked again.
+   *
+   * @param handler the drain handler
+   */
+  void setDrainHandler(Consumer<Void> handler);
+}
@@ -17,32 +17,81 @@
 package io.termd.core.tty;
 
 import io.termd.core.function.Consumer;
+import io.termd.core.util.IntSlice;
+import io.termd.core.util.IntSliceConsumer;
 
-import java.util.ArrayDeque;
-import java.util.Queue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * Buffers the code points until a read handler is set. Slices are forwarded as is to the read handler when
+ * nothing is buffered, otherwise they are copied in the buffer.<p/>
+ *
+ * The buffer is a lock-free single producer / single consumer queue : the producer is the thread delivering the
+ * input and the consumer is whoever drains the queue, a work in progress counter ensures there is a single drain
+ * at a time. When a read handler is set, all the buffered chunks are drained by a single executor task. In
+ * coalescing mode the chunks available at drain time are concatenated and delivered in a single array.
+ *
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
-public class ReadBuffer implements Consumer<int[]> {
+public class ReadBuffer implements IntSliceConsumer {
 
-  private final Queue<int[]> queue = new ArrayDeque<int[]>(10);
+  private final SpscQueue queue = new SpscQueue();
+  private final AtomicInteger wip = new AtomicInteger();
   private final Executor executor;
   private volatile Consumer<int[]> readHandler;
+  private volatile IntSliceConsumer sliceHandler;
+  private volatile boolean coalescing;
 
   public ReadBuffer(Executor executor) {
     this.executor = executor;
   }
 
+  /**
+   * @return true when the buffered chunks are concatenated before delivery
+   */
+  public boolean isCoalescing() {
+    return coalescing;
+  }
+
+  /**
+   * Set the coalescing mode.
+   *
+   * @param coalescing true to concatenate the buffered chunks before delivery
+   * @return this buffer
+   */
+  public ReadBuffer setCoalescing(boolean coalescing) {
+    this.coalescing = coalescing;
+    return this;
+  }
+
   @Override
   public void accept(int[] data) {
-    queue.add(data);
-    while (readHandler != null && queue.size() > 0) {
-      data = queue.poll();
-      if (data != null) {
-        readHandler.accept(data);
+    queue.offer(data);
+    drain();
+  }
+
+  @Override
+  public void accept(IntSlice data) {
+    IntSliceConsumer handler = sliceHandler;
+    if (handler != null && wip.compareAndSet(0, 1)) {
+      // We own the consumer side
+      if (queue.isEmpty()) {
+        boolean delivered = false;
+        try {
+          handler.accept(data);
+          delivered = true;
+        } finally {
+          if (!delivered) {
+            wip.set(0);
+          }
+        }
+      } else {
+        queue.offer(data.toArray());
       }
+      drainLoop(1);
+    } else {
+      accept(data.toArray());
     }
   }
 
@@ -54,29 +103,123 @@ public class ReadBuffer implements Consumer<int[]> {
     if (readHandler != null) {
       if (this.readHandler != null) {
         this.readHandler = readHandler;
+        this.sliceHandler = IntSlice.adapt(readHandler);
       } else {
         ReadBuffer.this.readHandler = readHandler;
+        this.sliceHandler = IntSlice.adapt(readHandler);
         drainQueue();
       }
     } else {
       this.readHandler = null;
+      this.sliceHandler = null;
     }
   }
 
   private void drainQueue() {
-    if (queue.size() > 0 && readHandler != null) {
+    // Racy check : a buffered chunk that is missed will be drained by the next input
+    if (!queue.isEmpty()) {
       executor.execute(new Runnable() {
         @Override
         public void run() {
-          if (readHandler != null) {
-            final int[] data = queue.poll();
-            if (data != null) {
-              readHandler.accept(data);
-              drainQueue();
-            }
-          }
+          drain();
         }
       });
     }
   }
+
+  private void drain() {
+    if (readHandler != null && wip.getAndIncrement() == 0) {
+      drainLoop(1);
+    }
+  }
+
+  /**
+   * Deliver the buffered chunks, the caller must own the consumer side.
+   *
+   * @param missed the work in progress count to acknowledge
+   */
+  private void drainLoop(int missed) {
+    while (true) {
+      Consumer<int[]> handler;
+      while ((handler = readHandler) != null && !queue.isEmpty()) {
+        int[] data = coalescing ? queue.pollAll() : queue.poll();
+        boolean delivered = false;
+        try {
+          handler.accept(data);
+          delivered = true;
+        } finally {
+          if (!delivered) {
+            // Release the consumer side, the next input or read handler will drain again
+            wip.set(0);
+          }
+        }
+      }
+      missed = wip.addAndGet(-missed);
+      if (missed == 0) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * An unbounded linked queue for a single producer and a single consumer.
+   */
+  private static class SpscQueue {
+
+    private static class Node {
+      int[] value;
+      volatile Node next;
+    }
+
+    // Consumer side
+    private Node head = new Node();
+
+    // Producer side
+    private Node tail = head;
+
+    void offer(int[] value) {
+      Node node = new Node();
+      node.value = value;
+      tail.next = node;
+      tail = node;
+    }
+
+    boolean isEmpty() {
+      return head.next == null;
+    }
+
+    int[] poll() {
+      Node next = head.next;
+      if (next == null) {
+        return null;
+      }
+      int[] value = next.value;
+      next.value = null;
+      head = next;
+      return value;
+    }
+
+    /**
+     * @return the concatenation of the available chunks or null when the queue is empty
+     */
+    int[] pollAll() {
+      int length = 0;
+      int count = 0;
+      for (Node node = head.next;node != null;node = node.next) {
+        length += node.value.length;
+        count++;
+      }
+      if (count < 2) {
+        return poll();
+      }
+      int[] data = new int[length];
+      int index = 0;
+      for (int i = 0;i < count;i++) {
+        int[] value = poll();
+        System.arraycopy(value, 0, data, index, value.length);
+        index += value.length;
+      }
+      return data;
+    }
+  }
 }
@@ -18,6 +18,7 @@ package io.termd.core.tty;
 
 import io.termd.core.function.BiConsumer;
 import io.termd.core.function.Consumer;
+import io.termd.core.util.IntSliceConsumer;
 import io.termd.core.util.Vector;
 
 import java.nio.charset.Charset;
@@ -75,14 +76,16 @@ public interface TtyConnection {
   Consumer<int[]> getStdinHandler();
 
   /**
-   * Set the read handler on this connection.
+   * Set the read handler on this connection. When the handler is an {@link IntSliceConsumer} it receives
+   * {@link io.termd.core.util.IntSlice} views of the decoded input instead of copies.
    *
    * @param handler the event handler
    */
   void setStdinHandler(Consumer<int[]> handler);
 
   /**
-   * @return the stdout handler of this connection
+   * @return the stdout handler of this connection, when it is an {@link IntSliceConsumer} it also accepts
+   *         {@link io.termd.core.util.IntSlice} views, see {@link io.termd.core.util.IntSlice#adapt(Consumer)}
    */
   Consumer<int[]> stdoutHandler();
 
@@ -1,11 +1,33 @@
 package io.termd.core.tty;
 
+import io.termd.core.function.Consumer;
 import io.termd.core.util.Helper;
 
 /**
  * @author bw on 25/10/2016.
  */
-public abstract class TtyConnectionSupport implements TtyConnection {
+public abstract class TtyConnectionSupport implements FlowControlledTtyConnection {
+
+    private volatile Consumer<Void> drainHandler;
+
+    /**
+     * The default implementation is always writable.
+     */
+    @Override
+    public boolean isWritable() {
+        return true;
+    }
+
+    @Override
+    public Consumer<Void> getDrainHandler() {
+        return drainHandler;
+    }
+
+    @Override
+    public void setDrainHandler(Consumer<Void> handler) {
+        this.drainHandler = handler;
+    }
+
     @Override
     public void close(int exit) {
         close();
@@ -25,7 +25,21 @@ public enum TtyEvent {
 
   EOF('D' - 64),
 
-  SUSP('Z' - 64);
+  SUSP('Z' - 64),
+
+  QUIT('\\' - 64),
+
+  ERASE(127),
+
+  KILL('U' - 64),
+
+  WERASE('W' - 64),
+
+  LNEXT('V' - 64),
+
+  START('Q' - 64),
+
+  STOP('S' - 64);
 
   final int codePoint;
 
@@ -19,22 +19,59 @@ package io.termd.core.tty;
 
 import io.termd.core.function.BiConsumer;
 import io.termd.core.function.Consumer;
+import io.termd.core.util.IntSlice;
+import io.termd.core.util.IntSliceConsumer;
+
+import java.util.EnumSet;
 
 /**
+ * Decodes the tty events from the code points, the code points between events are forwarded to the read handler
+ * as views of the input when the read handler is an {@link IntSliceConsumer}.<p/>
+ *
+ * The control characters are looked up in a table indexed by code point, so the input is decoded in a single pass.
+ * Each {@link TtyEvent} has a control character and only the enabled events are decoded, by default
+ * {@link TtyEvent#INTR}, {@link TtyEvent#SUSP} and {@link TtyEvent#EOF}. The events are decoded only when an event
+ * handler is set, except {@link TtyEvent#START} and {@link TtyEvent#STOP} that always control the
+ * {@link #isStopped() stopped} state when they are enabled. {@link TtyEvent#LNEXT} is not signaled, instead the next
+ * code point is forwarded as is to the read handler.<p/>
+ *
+ * When the input is buffered before this decoder, the {@link #signals(IntSliceConsumer) signal lane} decodes the
+ * {@link TtyEvent#INTR}, {@link TtyEvent#QUIT} and {@link TtyEvent#SUSP} signals before the buffer, so they are not
+ * delayed by the buffered input.
+ *
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
-public class TtyEventDecoder implements Consumer<int[]> {
+public class TtyEventDecoder implements IntSliceConsumer {
+
+  /**
+   * The value of a disabled control character.
+   */
+  public static final int DISABLED = -1;
+
+  private static final TtyEvent[] EVENTS = TtyEvent.values();
+  private static final int TABLE_SIZE = 256;
 
   private Consumer<int[]> readHandler;
+  private IntSliceConsumer sliceHandler;
   private BiConsumer<TtyEvent, Integer> eventHandler;
-  private final int vintr;
-  private final int veof;
-  private final int vsusp;
+  private final IntSlice run = new IntSlice();
+  private final int[] controlChars = new int[EVENTS.length];
+  private final EnumSet<TtyEvent> enabled = EnumSet.noneOf(TtyEvent.class);
+  private volatile TtyEvent[] table;
+  private boolean literalNext;
+  private volatile boolean stopped;
 
   public TtyEventDecoder(int vintr, int vsusp, int veof) {
-    this.vintr = vintr;
-    this.vsusp = vsusp;
-    this.veof = veof;
+    for (TtyEvent event : EVENTS) {
+      controlChars[event.ordinal()] = event.codePoint();
+    }
+    controlChars[TtyEvent.INTR.ordinal()] = vintr;
+    controlChars[TtyEvent.SUSP.ordinal()] = vsusp;
+    controlChars[TtyEvent.EOF.ordinal()] = veof;
+    enabled.add(TtyEvent.INTR);
+    enabled.add(TtyEvent.SUSP);
+    enabled.add(TtyEvent.EOF);
+    buildTable();
   }
 
   public Consumer<int[]> getReadHandler() {
@@ -43,6 +80,7 @@ public class TtyEventDecoder implements Consumer<int[]> {
 
   public TtyEventDecoder setReadHandler(Consumer<int[]> readHandler) {
     this.readHandler = readHandler;
+    this.sliceHandler = IntSlice.adapt(readHandler);
     return this;
   }
 
@@ -55,42 +93,168 @@ public class TtyEventDecoder implements Consumer<int[]> {
     return this;
   }
 
-  @Override
-  public void accept(int[] data) {
-    if (eventHandler != null) {
-      int index = 0;
-      while (index < data.length) {
-        int val = data[index];
-        TtyEvent event = null;
-        if (val == vintr) {
-          event = TtyEvent.INTR;
-        } else if (val == vsusp) {
-          event = TtyEvent.SUSP;
-        } else if (val == veof) {
-          event = TtyEvent.EOF;
+  /**
+   * @param event the event
+   * @return the control character of the event or {@link #DISABLED}
+   */
+  public synchronized int getControlChar(TtyEvent event) {
+    return controlChars[event.ordinal()];
+  }
+
+  /**
+   * Set the control character of an event, only the control characters in the {@code [0,255]} range can be
+   * decoded, any other value like {@link #DISABLED} disables the control character.
+   *
+   * @param event the event
+   * @param codePoint the control character
+   * @return this decoder
+   */
+  public synchronized TtyEventDecoder setControlChar(TtyEvent event, int codePoint) {
+    controlChars[event.ordinal()] = codePoint;
+    buildTable();
+    return this;
+  }
+
+  /**
+   * @param event the event
+   * @return true when the event is decoded
+   */
+  public synchronized boolean isEnabled(TtyEvent event) {
+    return enabled.contains(event);
+  }
+
+  /**
+   * Enable or disable the decoding of an event.
+   *
+   * @param event the event
+   * @param enable true to decode the event
+   * @return this decoder
+   */
+  public synchronized TtyEventDecoder setEnabled(TtyEvent event, boolean enable) {
+    if (enable) {
+      enabled.add(event);
+    } else {
+      enabled.remove(event);
+    }
+    buildTable();
+    return this;
+  }
+
+  /**
+   * @return true when output has been stopped by {@link TtyEvent#STOP} and not yet restarted by {@link TtyEvent#START}
+   */
+  public boolean isStopped() {
+    return stopped;
+  }
+
+  private void buildTable() {
+    TtyEvent[] table = new TtyEvent[TABLE_SIZE];
+    // Iterate in reverse order so the first events win when they share the same control character
+    for (int i = EVENTS.length - 1;i >= 0;i--) {
+      TtyEvent event = EVENTS[i];
+      int codePoint = controlChars[i];
+      if (enabled.contains(event) && codePoint >= 0 && codePoint < TABLE_SIZE) {
+        table[codePoint] = event;
+      }
+    }
+    this.table = table;
+  }
+
+  /**
+   * Create a consumer signaling the {@link TtyEvent#INTR}, {@link TtyEvent#QUIT} and {@link TtyEvent#SUSP} events
+   * to the event handler as soon as they are received and forwarding the other code points to the buffer feeding
+   * this decoder. The code points received before a signal are forwarded to the buffer before the signal, so the
+   * signal is handled after them unless the buffer holds them. The signaled code points are not forwarded.
+   *
+   * @param buffer the buffer feeding this decoder
+   * @return the consumer of the input
+   */
+  public IntSliceConsumer signals(final IntSliceConsumer buffer) {
+    return new IntSliceConsumer() {
+
+      private final IntSlice run = new IntSlice();
+      private boolean literalNext;
+
+      @Override
+      public void accept(int[] data) {
+        accept(IntSlice.wrap(data));
+      }
+
+      @Override
+      public void accept(IntSlice data) {
+        TtyEvent[] table = TtyEventDecoder.this.table;
+        BiConsumer<TtyEvent, Integer> handler = eventHandler;
+        if (handler == null) {
+          // Not decoded by this decoder either
+          buffer.accept(data);
+          return;
         }
-        if (event != null) {
-          if (eventHandler != null) {
-            if (readHandler != null) {
-              int[] a = new int[index];
-              if (index > 0) {
-                System.arraycopy(data, 0, a, 0, index);
-                readHandler.accept(a);
-              }
-            }
-            eventHandler.accept(event, val);
-            int[] a = new int[data.length - index - 1];
-            System.arraycopy(data, index + 1, a, 0, a.length);
-            data = a;
-            index = 0;
+        int[] array = data.array();
+        int start = data.offset();
+        int end = start + data.length();
+        for (int index = start;index < end;index++) {
+          int val = array[index];
+          if (literalNext) {
+            literalNext = false;
             continue;
           }
+          TtyEvent event = val >= 0 && val < TABLE_SIZE ? table[val] : null;
+          if (event == TtyEvent.LNEXT) {
+            literalNext = true;
+          } else if (event == TtyEvent.INTR || event == TtyEvent.QUIT || event == TtyEvent.SUSP) {
+            if (index > start) {
+              buffer.accept(run.set(array, start, index - start));
+            }
+            handler.accept(event, val);
+            start = index + 1;
+          }
+        }
+        if (end > start) {
+          buffer.accept(run.set(array, start, end - start));
         }
-        index++;
       }
+    };
+  }
+
+  @Override
+  public void accept(int[] data) {
+    accept(IntSlice.wrap(data));
+  }
+
+  @Override
+  public void accept(IntSlice data) {
+    TtyEvent[] table = this.table;
+    BiConsumer<TtyEvent, Integer> handler = eventHandler;
+    int[] array = data.array();
+    int start = data.offset();
+    int end = start + data.length();
+    for (int index = start;index < end;index++) {
+      int val = array[index];
+      if (literalNext) {
+        literalNext = false;
+        continue;
+      }
+      TtyEvent event = val >= 0 && val < TABLE_SIZE ? table[val] : null;
+      if (event == null) {
+        continue;
+      }
+      if (event == TtyEvent.START || event == TtyEvent.STOP) {
+        stopped = event == TtyEvent.STOP;
+      } else if (handler == null) {
+        continue;
+      }
+      if (sliceHandler != null && index > start) {
+        sliceHandler.accept(run.set(array, start, index - start));
+      }
+      if (event == TtyEvent.LNEXT) {
+        literalNext = true;
+      } else if (handler != null) {
+        handler.accept(event, val);
+      }
+      start = index + 1;
     }
-    if (readHandler != null && data.length > 0) {
-      readHandler.accept(data);
+    if (sliceHandler != null && end > start) {
+      sliceHandler.accept(run.set(array, start, end - start));
     }
   }
 }
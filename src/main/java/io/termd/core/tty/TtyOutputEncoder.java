@@ -0,0 +1,276 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.tty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.termd.core.function.Consumer;
+import io.termd.core.util.IntSlice;
+import io.termd.core.util.IntSliceConsumer;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * The output stage of a connection : translates {@code \n} to {@code \r\n} (equivalent to {@code stty onlcr}) and
+ * encodes the code points in a single pass into one buffer obtained from the transport allocator, each write
+ * produces a single buffer handed to the buffer handler that becomes responsible for releasing it.<p/>
+ *
+ * UTF-8 and US-ASCII are encoded directly in the buffer, other charsets fallback to {@link Charset#encode}.
+ * Like {@link TtyOutputMode} this class does not hold any state and can be called from several threads.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class TtyOutputEncoder implements IntSliceConsumer {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final Charset US_ASCII = Charset.forName("US-ASCII");
+  private static final int CHARSET = 0, ASCII = 1, UTF8 = 2;
+  private static final int REPLACEMENT_BYTE = '?';
+
+  private final ByteBufAllocator allocator;
+  private final Consumer<ByteBuf> onBuffer;
+  private volatile Charset charset;
+  private volatile int mode;
+
+  public TtyOutputEncoder(Charset charset, ByteBufAllocator allocator, Consumer<ByteBuf> onBuffer) {
+    this.allocator = allocator;
+    this.onBuffer = onBuffer;
+    setCharset(charset);
+  }
+
+  /**
+   * Set a new charset on the encoder.
+   *
+   * @param charset the new charset
+   */
+  public void setCharset(Charset charset) {
+    this.mode = modeOf(charset);
+    this.charset = charset;
+  }
+
+  @Override
+  public void accept(int[] codePoints) {
+    encode(codePoints, 0, codePoints.length);
+  }
+
+  @Override
+  public void accept(IntSlice codePoints) {
+    encode(codePoints.array(), codePoints.offset(), codePoints.offset() + codePoints.length());
+  }
+
+  /**
+   * Encode a string without converting it to code points first.
+   *
+   * @param s the string to encode
+   */
+  public void write(CharSequence s) {
+    int len = s.length();
+    if (len == 0) {
+      return;
+    }
+    ByteBuf buf;
+    switch (mode) {
+      case UTF8: {
+        int size = 0;
+        for (int i = 0;i < len;i++) {
+          char c = s.charAt(i);
+          if (c < 0x80) {
+            size += c == '\n' ? 2 : 1;
+          } else if (c < 0x800) {
+            size += 2;
+          } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+            size += 4;
+            i++;
+          } else {
+            size += 3;
+          }
+        }
+        buf = allocator.buffer(size);
+        for (int i = 0;i < len;i++) {
+          char c = s.charAt(i);
+          if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+            writeUtf8(buf, Character.toCodePoint(c, s.charAt(++i)));
+          } else {
+            writeUtf8(buf, c);
+          }
+        }
+        break;
+      }
+      case ASCII: {
+        buf = allocator.buffer(len + countNewLines(s));
+        for (int i = 0;i < len;i++) {
+          char c = s.charAt(i);
+          if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+            i++;
+          }
+          writeAscii(buf, c);
+        }
+        break;
+      }
+      default: {
+        CharBuffer chars = CharBuffer.allocate(len + countNewLines(s));
+        for (int i = 0;i < len;i++) {
+          char c = s.charAt(i);
+          if (c == '\n') {
+            chars.put('\r');
+          }
+          chars.put(c);
+        }
+        buf = encodeCharset(chars);
+        break;
+      }
+    }
+    onBuffer.accept(buf);
+  }
+
+  private void encode(int[] codePoints, int from, int to) {
+    if (from == to) {
+      return;
+    }
+    ByteBuf buf;
+    switch (mode) {
+      case UTF8: {
+        int size = 0;
+        for (int i = from;i < to;i++) {
+          int cp = codePoints[i];
+          if (cp < 0x80) {
+            size += cp == '\n' ? 2 : 1;
+          } else if (cp < 0x800) {
+            size += 2;
+          } else if (cp < 0x10000) {
+            size += 3;
+          } else {
+            size += 4;
+          }
+        }
+        buf = allocator.buffer(size);
+        for (int i = from;i < to;i++) {
+          writeUtf8(buf, codePoints[i]);
+        }
+        break;
+      }
+      case ASCII: {
+        int size = to - from;
+        for (int i = from;i < to;i++) {
+          if (codePoints[i] == '\n') {
+            size++;
+          }
+        }
+        buf = allocator.buffer(size);
+        for (int i = from;i < to;i++) {
+          writeAscii(buf, codePoints[i]);
+        }
+        break;
+      }
+      default: {
+        int capacity = 0;
+        for (int i = from;i < to;i++) {
+          int cp = codePoints[i];
+          capacity += cp == '\n' ? 2 : Character.isValidCodePoint(cp) ? Character.charCount(cp) : 1;
+        }
+        CharBuffer chars = CharBuffer.allocate(capacity);
+        for (int i = from;i < to;i++) {
+          int cp = codePoints[i];
+          if (cp == '\n') {
+            chars.put('\r').put('\n');
+          } else if (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            chars.put((char) (cp < 0 ? REPLACEMENT_BYTE : cp));
+          } else if (cp <= Character.MAX_CODE_POINT) {
+            chars.put((char) (0xD800 + ((cp - Character.MIN_SUPPLEMENTARY_CODE_POINT) >> 10)));
+            chars.put((char) (0xDC00 + (cp & 0x3FF)));
+          } else {
+            chars.put((char) REPLACEMENT_BYTE);
+          }
+        }
+        buf = encodeCharset(chars);
+        break;
+      }
+    }
+    onBuffer.accept(buf);
+  }
+
+  private ByteBuf encodeCharset(CharBuffer chars) {
+    chars.flip();
+    ByteBuffer bytes = charset.encode(chars);
+    ByteBuf buf = allocator.buffer(bytes.remaining());
+    buf.writeBytes(bytes);
+    return buf;
+  }
+
+  private static void writeUtf8(ByteBuf buf, int cp) {
+    if (cp < 0x80) {
+      if (cp == '\n') {
+        buf.writeByte('\r');
+      } else if (cp < 0) {
+        cp = REPLACEMENT_BYTE;
+      }
+      buf.writeByte(cp);
+    } else if (cp < 0x800) {
+      buf.writeByte(0xC0 | (cp >> 6));
+      buf.writeByte(0x80 | (cp & 0x3F));
+    } else if (cp < 0x10000) {
+      if (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE) {
+        // Unpaired surrogate cannot be encoded, same replacement than the UTF-8 encoder
+        buf.writeByte(REPLACEMENT_BYTE);
+        return;
+      }
+      buf.writeByte(0xE0 | (cp >> 12));
+      buf.writeByte(0x80 | ((cp >> 6) & 0x3F));
+      buf.writeByte(0x80 | (cp & 0x3F));
+    } else if (cp <= Character.MAX_CODE_POINT) {
+      buf.writeByte(0xF0 | (cp >> 18));
+      buf.writeByte(0x80 | ((cp >> 12) & 0x3F));
+      buf.writeByte(0x80 | ((cp >> 6) & 0x3F));
+      buf.writeByte(0x80 | (cp & 0x3F));
+    } else {
+      buf.writeByte(REPLACEMENT_BYTE);
+    }
+  }
+
+  private static void writeAscii(ByteBuf buf, int cp) {
+    if (cp == '\n') {
+      buf.writeByte('\r');
+      buf.writeByte('\n');
+    } else if (cp >= 0 && cp < 0x80) {
+      buf.writeByte(cp);
+    } else {
+      buf.writeByte(REPLACEMENT_BYTE);
+    }
+  }
+
+  private static int countNewLines(CharSequence s) {
+    int count = 0;
+    for (int i = 0;i < s.length();i++) {
+      if (s.charAt(i) == '\n') {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static int modeOf(Charset charset) {
+    if (UTF_8.equals(charset)) {
+      return UTF8;
+    } else if (US_ASCII.equals(charset)) {
+      return ASCII;
+    } else {
+      return CHARSET;
+    }
+  }
+}
@@ -18,29 +18,46 @@ package io.termd.core.tty;
 
 
 import io.termd.core.function.Consumer;
+import io.termd.core.util.IntSlice;
+import io.termd.core.util.IntSliceConsumer;
 
 /**
+ * Translates {@code \n} to {@code \r\n}, the chunks are forwarded as views of the output when the
+ * handler is an {@link IntSliceConsumer}. The calls are serialized since the views reuse the same slice, so this
+ * class can be called from several threads.
+ *
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
-public class TtyOutputMode implements Consumer<int[]> {
+public class TtyOutputMode implements IntSliceConsumer {
+
+  private static final int[] CRLF = {'\r', '\n'};
 
-  private final Consumer<int[]> readHandler;
+  private final IntSliceConsumer readHandler;
+  private final IntSlice input = new IntSlice();
+  private final IntSlice chunk = new IntSlice();
 
   public TtyOutputMode(Consumer<int[]> readHandler) {
-    this.readHandler = readHandler;
+    this.readHandler = IntSlice.adapt(readHandler);
   }
 
   @Override
-  public void accept(int[] data) {
+  public synchronized void accept(int[] data) {
+    accept(input.set(data, 0, data.length));
+  }
+
+  @Override
+  public synchronized void accept(IntSlice slice) {
+    int[] data = slice.array();
+    int end = slice.offset() + slice.length();
     // TODO 假设这里的TtyOutputMode为TtyCommand.stdout，则readHandler实际好似封装了
     //  IoOutputStream的BinaryEncoder，readHandler.accept最终会调用IoOutputStream.write输出数据到终端
     //  所以readHandler是不是改成writeHandler更贴切呢？
-    if (readHandler != null && data.length > 0) {
+    if (readHandler != null && slice.length() > 0) {
       // TODO 起始指针
-      int prev = 0;
+      int prev = slice.offset();
       // TODO 当前指针
-      int ptr = 0;
-      while (ptr < data.length) {
+      int ptr = prev;
+      while (ptr < end) {
         // Simple implementation that works only on system that uses /n as line terminator
         // equivalent to 'stty onlcr'
         int cp = data[ptr];
@@ -48,10 +65,10 @@ public class TtyOutputMode implements Consumer<int[]> {
           if (ptr > prev) {
             // TODO 遇到回车如果当前指针大于起始指针(即回车不再行开头的时候), 发送整行数据，不带回车
             //  也就是回车前面有数据的话，当前回车会被忽略
-            sendChunk(data, prev, ptr);
+            readHandler.accept(chunk.set(data, prev, ptr - prev));
           }
           // TODO 否则发送回车换行
-          readHandler.accept(new int[]{'\r','\n'});
+          readHandler.accept(chunk.set(CRLF, 0, 2));
           // TODO 发送回车换行后起始指针和当前指针同时移动，因为下次输出是在新行了
           prev = ++ptr;
         } else {
@@ -59,15 +76,8 @@ public class TtyOutputMode implements Consumer<int[]> {
         }
       }
       if (ptr > prev) {
-        sendChunk(data, prev, ptr);
+        readHandler.accept(chunk.set(data, prev, ptr - prev));
       }
     }
   }
-
-  private void sendChunk(int[] data, int prev, int ptr) {
-    int len = ptr - prev;
-    int[] buf = new int[len];
-    System.arraycopy(data, prev, buf, 0, len);
-    readHandler.accept(buf);
-  }
 }
@@ -266,8 +266,10 @@ public class Helper {
 
   public static int[] convert(List<Integer> ints) {
     int[] result = new int[ints.size()];
-    for (int index = 0; index < ints.size(); index++) {
-      result[index] = ints.get(index);
+    int index = 0;
+    // Iterate as the list can be a linked list
+    for (int i : ints) {
+      result[index++] = i;
     }
     return result;
   }
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.util;
+
+import io.termd.core.function.Consumer;
+
+import java.util.Arrays;
+
+/**
+ * A view over a range of an array of code points.<p/>
+ *
+ * A slice is mutable so a producer can reuse the same instance for each chunk it delivers. A slice passed to an
+ * {@link IntSliceConsumer} is only valid during the call : the producer may reuse the slice or overwrite the
+ * underlying array afterwards, a consumer that needs to retain the code points must copy them with
+ * {@link #toArray()}.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public final class IntSlice {
+
+  private static final int[] EMPTY = new int[0];
+
+  /**
+   * Wrap an array in a new slice.
+   *
+   * @param array the array
+   * @return the slice
+   */
+  public static IntSlice wrap(int[] array) {
+    return new IntSlice(array, 0, array.length);
+  }
+
+  /**
+   * Adapt a consumer of code points to an {@link IntSliceConsumer}, when the consumer is already an
+   * {@link IntSliceConsumer} it is returned, otherwise slices are copied to an exact length array before being
+   * delivered to the consumer.
+   *
+   * @param consumer the consumer to adapt
+   * @return the adapted consumer or null when the consumer is null
+   */
+  public static IntSliceConsumer adapt(final Consumer<int[]> consumer) {
+    if (consumer == null || consumer instanceof IntSliceConsumer) {
+      return (IntSliceConsumer) consumer;
+    }
+    return new IntSliceConsumer() {
+      @Override
+      public void accept(IntSlice slice) {
+        consumer.accept(slice.toArray());
+      }
+      @Override
+      public void accept(int[] data) {
+        consumer.accept(data);
+      }
+    };
+  }
+
+  private int[] array;
+  private int offset;
+  private int length;
+
+  public IntSlice() {
+    this.array = EMPTY;
+  }
+
+  public IntSlice(int[] array, int offset, int length) {
+    set(array, offset, length);
+  }
+
+  /**
+   * Update this slice to view another range.
+   *
+   * @param array the array
+   * @param offset the range offset
+   * @param length the range length
+   * @return this slice
+   */
+  public IntSlice set(int[] array, int offset, int length) {
+    if (offset < 0 || length < 0 || offset + length > array.length) {
+      throw new IndexOutOfBoundsException("Invalid range [" + offset + "," + (offset + length) + "] of array of length " + array.length);
+    }
+    this.array = array;
+    this.offset = offset;
+    this.length = length;
+    return this;
+  }
+
+  /**
+   * @return the underlying array
+   */
+  public int[] array() {
+    return array;
+  }
+
+  /**
+   * @return the offset of this slice in the underlying array
+   */
+  public int offset() {
+    return offset;
+  }
+
+  public int length() {
+    return length;
+  }
+
+  public boolean isEmpty() {
+    return length == 0;
+  }
+
+  public int get(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("Wrong index " + index);
+    }
+    return array[offset + index];
+  }
+
+  /**
+   * Copy the code points of this slice in a destination array.
+   *
+   * @param dst the destination array
+   * @param dstOffset the destination offset
+   */
+  public void copyTo(int[] dst, int dstOffset) {
+    System.arraycopy(array, offset, dst, dstOffset, length);
+  }
+
+  /**
+   * @return a copy of the code points of this slice
+   */
+  public int[] toArray() {
+    return Arrays.copyOfRange(array, offset, offset + length);
+  }
+
+  @Override
+  public String toString() {
+    return new String(array, offset, length);
+  }
+}
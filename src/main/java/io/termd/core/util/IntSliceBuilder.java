@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.util;
+
+import java.util.Arrays;
+
+/**
+ * A growable array of code points, the builder is meant to be cleared and reused so it does not allocate
+ * once its capacity fits the content.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public final class IntSliceBuilder {
+
+  private int[] array;
+  private int length;
+  private final IntSlice slice = new IntSlice();
+
+  public IntSliceBuilder() {
+    this(16);
+  }
+
+  public IntSliceBuilder(int capacity) {
+    this.array = new int[capacity];
+  }
+
+  public IntSliceBuilder append(int codePoint) {
+    if (length == array.length) {
+      array = Arrays.copyOf(array, Math.max(16, length * 2));
+    }
+    array[length++] = codePoint;
+    return this;
+  }
+
+  public IntSliceBuilder append(int[] codePoints) {
+    return append(codePoints, 0, codePoints.length);
+  }
+
+  public IntSliceBuilder append(int[] codePoints, int offset, int len) {
+    if (length + len > array.length) {
+      array = Arrays.copyOf(array, Math.max(length + len, length * 2));
+    }
+    System.arraycopy(codePoints, offset, array, length, len);
+    length += len;
+    return this;
+  }
+
+  public int length() {
+    return length;
+  }
+
+  public boolean isEmpty() {
+    return length == 0;
+  }
+
+  public IntSliceBuilder clear() {
+    length = 0;
+    return this;
+  }
+
+  /**
+   * @return a view of the content, the view is reused and is only valid until the builder is modified
+   */
+  public IntSlice slice() {
+    return slice.set(array, 0, length);
+  }
+
+  /**
+   * @return a copy of the content
+   */
+  public int[] toArray() {
+    return Arrays.copyOf(array, length);
+  }
+
+  @Override
+  public String toString() {
+    return new String(array, 0, length);
+  }
+}
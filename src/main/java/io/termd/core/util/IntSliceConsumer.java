@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.util;
+
+import io.termd.core.function.Consumer;
+
+/**
+ * A consumer of code points that can also consume {@link IntSlice} views, stages of the stdin and stdout
+ * pipelines forward views to such consumers instead of copying code points in new arrays.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public interface IntSliceConsumer extends Consumer<int[]> {
+
+  /**
+   * Consume a view of code points, the slice is only valid during the call.
+   *
+   * @param slice the code points
+   */
+  void accept(IntSlice slice);
+
+}
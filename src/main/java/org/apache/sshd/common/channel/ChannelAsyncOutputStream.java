@@ -19,6 +19,10 @@
 package org.apache.sshd.common.channel;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.sshd.common.SshConstants;
@@ -26,7 +30,6 @@ import org.apache.sshd.common.future.CloseFuture;
 import org.apache.sshd.common.future.SshFutureListener;
 import org.apache.sshd.common.io.IoOutputStream;
 import org.apache.sshd.common.io.IoWriteFuture;
-import org.apache.sshd.common.io.WritePendingException;
 import org.apache.sshd.common.session.Session;
 import org.apache.sshd.common.util.ValidateUtils;
 import org.apache.sshd.common.util.buffer.Buffer;
@@ -37,6 +40,8 @@ public class ChannelAsyncOutputStream extends AbstractCloseable implements IoOut
     private final Channel channelInstance;
     private final byte cmd;
     private final AtomicReference<IoWriteFutureImpl> pendingWrite = new AtomicReference<>();
+    // The writes submitted while another write is pending, written in order when it completes
+    private final Queue<IoWriteFutureImpl> queuedWrites = new ArrayDeque<>();
 
     public ChannelAsyncOutputStream(Channel channel, byte cmd) {
         this.channelInstance = ValidateUtils.checkNotNull(channel, "No channel");
@@ -57,21 +62,51 @@ public class ChannelAsyncOutputStream extends AbstractCloseable implements IoOut
         final IoWriteFutureImpl future = new IoWriteFutureImpl(buffer);
         if (isClosing()) {
             future.setValue(new IOException("Closed"));
-        } else {
-//            if (!pendingWrite.compareAndSet(null, future)) {
-//                throw new WritePendingException("No write pending future");
-//            }
-            // TODO 这样做只是为了临时解决输出太频繁时，由于session.writePacket是异步回调
-            //  pendingWrite.compareAndSet(future, null)，这就会导致某些输出因pendingWrite还未成功置为null而失败
-            while (pendingWrite.compareAndSet(null, future)) {}
+        } else if (pendingWrite.compareAndSet(null, future)) {
             doWriteIfPossible(false);
+        } else {
+            queuedWrites.add(future);
         }
         return future;
     }
 
     @Override
-    protected CloseFuture doCloseGracefully() {
-        return builder().when(pendingWrite.get()).build().close(false);
+    protected synchronized CloseFuture doCloseGracefully() {
+        List<IoWriteFutureImpl> futures = new ArrayList<>(queuedWrites);
+        IoWriteFutureImpl future = pendingWrite.get();
+        if (future != null) {
+            futures.add(future);
+        }
+        return builder().when(futures).build().close(false);
+    }
+
+    @Override
+    protected void doCloseImmediately() {
+        List<IoWriteFutureImpl> futures;
+        synchronized (this) {
+            futures = new ArrayList<>(queuedWrites);
+            queuedWrites.clear();
+        }
+        for (IoWriteFutureImpl future : futures) {
+            future.setValue(new IOException("Closed"));
+        }
+        super.doCloseImmediately();
+    }
+
+    /**
+     * Complete a write and start the next queued write.
+     */
+    protected void writeCompleted(IoWriteFutureImpl future, Object value) {
+        future.setValue(value);
+        synchronized (this) {
+            if (pendingWrite.compareAndSet(future, null)) {
+                IoWriteFutureImpl next = queuedWrites.poll();
+                if (next != null) {
+                    pendingWrite.set(next);
+                    doWriteIfPossible(false);
+                }
+            }
+        }
     }
 
     protected synchronized void doWriteIfPossible(boolean resume) {
@@ -130,12 +165,10 @@ public class ChannelAsyncOutputStream extends AbstractCloseable implements IoOut
                                 }
                                 doWriteIfPossible(false);
                             } else {
-                                boolean nullified = pendingWrite.compareAndSet(future, null);
                                 if (log.isTraceEnabled()) {
-                                    log.trace("doWriteIfPossible({}) completed write len={}, more={}",
-                                            stream, total, !nullified);
+                                    log.trace("doWriteIfPossible({}) completed write len={}", stream, total);
                                 }
-                                future.setValue(Boolean.TRUE);
+                                writeCompleted(future, Boolean.TRUE);
                             }
                         }
 
@@ -150,16 +183,14 @@ public class ChannelAsyncOutputStream extends AbstractCloseable implements IoOut
                                 log.trace("doWriteIfPossible(" + this + ") write failure details", reason);
                             }
 
-                            boolean nullified = pendingWrite.compareAndSet(future, null);
                             if (log.isTraceEnabled()) {
-                                log.trace("doWriteIfPossible({}) failed write len={}, more={}",
-                                        stream, total, !nullified);
+                                log.trace("doWriteIfPossible({}) failed write len={}", stream, total);
                             }
-                            future.setValue(reason);
+                            writeCompleted(future, reason);
                         }
                     });
                 } catch (IOException e) {
-                    future.setValue(e);
+                    writeCompleted(future, e);
                 }
             } else if (!resume) {
                 if (log.isDebugEnabled()) {
@@ -167,11 +198,10 @@ public class ChannelAsyncOutputStream extends AbstractCloseable implements IoOut
                 }
             }
         } else {
-            boolean nullified = pendingWrite.compareAndSet(future, null);
             if (log.isTraceEnabled()) {
-                log.trace("doWriteIfPossible({}) current buffer sent - more={}", this, !nullified);
+                log.trace("doWriteIfPossible({}) current buffer sent", this);
             }
-            future.setValue(Boolean.TRUE);
+            writeCompleted(future, Boolean.TRUE);
         }
     }
 
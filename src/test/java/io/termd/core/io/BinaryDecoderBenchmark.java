@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.io;
+
+import io.termd.core.function.Consumer;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+
+/**
+ * Compares the UTF-8 fast path of {@link BinaryDecoder} with the {@link CharsetDecoder} path, run it with
+ * {@code java -cp ... io.termd.core.io.BinaryDecoderBenchmark}.
+ *
+ * The charset path is forced by decoding with a charset delegating to UTF-8 that is not recognized by the
+ * fast path.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class BinaryDecoderBenchmark {
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private static final Charset DELEGATING_UTF8 = new Charset("x-delegating-utf-8", new String[0]) {
+    @Override
+    public boolean contains(Charset cs) {
+      return UTF8.contains(cs);
+    }
+    @Override
+    public CharsetDecoder newDecoder() {
+      return UTF8.newDecoder();
+    }
+    @Override
+    public CharsetEncoder newEncoder() {
+      return UTF8.newEncoder();
+    }
+  };
+
+  public static void main(String[] args) {
+    byte[] keystroke = "a".getBytes(UTF8);
+    byte[] paste = repeat("ls -al /tmp | grep foo\n", 4096).getBytes(UTF8);
+    byte[] mixed = repeat("h\u00e9llo \u20ac \u4f60\u597d \ud83d\ude00\n", 4096).getBytes(UTF8);
+    System.out.println(String.format("%-10s %-8s %16s %16s", "workload", "path", "MB/s", "bytes alloc/call"));
+    for (int i = 0;i < 2;i++) {
+      // First round is warmup
+      boolean print = i == 1;
+      run("keystroke", keystroke, 2000000, print);
+      run("paste", paste, 20000, print);
+      run("mixed", mixed, 20000, print);
+    }
+  }
+
+  private static void run(String name, byte[] data, int iterations, boolean print) {
+    measure(name, "charset", DELEGATING_UTF8, data, iterations, print);
+    measure(name, "fast", UTF8, data, iterations, print);
+  }
+
+  private static void measure(String name, String path, Charset charset, byte[] data, int iterations, boolean print) {
+    final long[] count = new long[1];
+    BinaryDecoder decoder = new BinaryDecoder(512, charset, new Consumer<int[]>() {
+      @Override
+      public void accept(int[] codePoints) {
+        count[0] += codePoints.length;
+      }
+    });
+    long allocated = allocatedBytes();
+    long now = System.nanoTime();
+    for (int i = 0;i < iterations;i++) {
+      decoder.write(data);
+    }
+    long elapsed = System.nanoTime() - now;
+    allocated = allocatedBytes() - allocated;
+    if (print) {
+      double mbPerSec = ((double) data.length * iterations / (1024 * 1024)) / (elapsed / 1000000000D);
+      System.out.println(String.format("%-10s %-8s %16.1f %16d", name, path, mbPerSec, allocated / iterations));
+    }
+    if (count[0] == 0) {
+      throw new AssertionError();
+    }
+  }
+
+  private static long allocatedBytes() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return 0;
+  }
+
+  private static String repeat(String s, int size) {
+    StringBuilder sb = new StringBuilder();
+    while (sb.length() < size) {
+      sb.append(s);
+    }
+    return sb.toString();
+  }
+}
@@ -106,4 +106,44 @@ public class BinaryEncodingTest {
     assertEquals(1, codePoints.size());
     assertEquals('\u20AC', (int)codePoints.get(0));
   }
+
+  @Test
+  public void testDecoderSplitSequence() throws Exception {
+    final StringBuilder sb = new StringBuilder();
+    BinaryDecoder decoder = new BinaryDecoder(10, UTF8, new Consumer<int[]>() {
+      @Override
+      public void accept(int[] event) {
+        Helper.appendCodePoints(event, sb);
+      }
+    });
+    String s = "A\u00e9\u20ac" + new StringBuilder().appendCodePoint(66231) + "B";
+    for (byte b : s.getBytes(UTF8)) {
+      decoder.write(new byte[]{b});
+    }
+    assertEquals(s, sb.toString());
+  }
+
+  @Test
+  public void testDecoderMalformed() throws Exception {
+    assertDecode(10, Arrays.asList("A\uFFFDB"), 65, 0x80, 66);
+    assertDecode(10, Arrays.asList("A\uFFFDB"), 65, 0xE2, 0x82, 66);
+    assertDecode(10, Arrays.asList("\uFFFD"), 0xC0, 0x80);
+    assertDecode(10, Arrays.asList("\uFFFD"), 0xED, 0xA0, 0x80);
+  }
+
+  @Test
+  public void testDecoderAscii() throws Exception {
+    final StringBuilder sb = new StringBuilder();
+    BinaryDecoder decoder = new BinaryDecoder(2, Charset.forName("US-ASCII"), new Consumer<int[]>() {
+      @Override
+      public void accept(int[] event) {
+        Helper.appendCodePoints(event, sb);
+      }
+    });
+    decoder.write(new byte[]{65, 66, 67, (byte) 0xE2});
+    assertEquals("ABC\uFFFD", sb.toString());
+    decoder.setCharset(UTF8);
+    decoder.write(new byte[]{(byte) 0xE2, (byte) 0x82, (byte) 0xAC});
+    assertEquals("ABC\uFFFD\u20AC", sb.toString());
+  }
 }
@@ -23,9 +23,13 @@ import io.termd.core.util.CompletableFuture;
 import io.termd.core.util.Helper;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -79,6 +83,30 @@ public class CompletionTest extends TestBase {
     }
   }
 
+  @Test
+  public void testTryCompleteWhenCancelled() {
+    TestTerm term = new TestTerm(this);
+    final AtomicReference<Completion> completion = new AtomicReference<Completion>();
+    term.readline(new Consumer<String>() {
+      @Override
+      public void accept(String s) {
+        // no op
+      }
+    }, new Consumer<Completion>() {
+      @Override
+      public void accept(Completion c) {
+        completion.set(c);
+      }
+    });
+    term.read('a');
+    term.read('\t');
+    assertTrue(completion.get().cancel());
+    assertFalse(completion.get().tryComplete(new int[]{'b'}, true));
+    assertFalse(completion.get().tryEnd());
+    assertFalse(completion.get().trySuggest(Collections.singletonList(new int[]{'b'})));
+    term.assertScreen("% a");
+  }
+
   @Test
   public void testEmptyCompletion() {
     TestTerm term = new TestTerm(this);
@@ -468,4 +496,167 @@ public class CompletionTest extends TestBase {
     completion.get().complete(Helper.toCodePoints(inline), terminate);
     term.assertScreen(expected);
   }
+
+  private static CompletionProvider provider(final AtomicInteger count, final String... words) {
+    return new CompletionProvider() {
+      @Override
+      public void provide(CompletionRequest request) {
+        count.incrementAndGet();
+        List<int[]> candidates = new ArrayList<int[]>();
+        for (String word : words) {
+          candidates.add(Helper.toCodePoints(word));
+        }
+        request.complete(candidates);
+      }
+    };
+  }
+
+  @Test
+  public void testCompletionCache() {
+    TestTerm term = new TestTerm(this);
+    AtomicInteger count = new AtomicInteger();
+    CompletionCache cache = new CompletionCache(provider(count, "foo", "foobar", "fizz", "bar"));
+    Supplier<String> line = term.readlineComplete(cache);
+    term.read('f', 'o');
+    term.read('\t');
+    term.executeTasks();
+    assertEquals(1, count.get());
+    term.assertScreen("% foo");
+    term.read('\t');
+    assertEquals(1, count.get());
+    term.assertScreen("% foo", "foo    foobar ", "% foo");
+    term.read('b', '\t');
+    assertEquals(1, count.get());
+    term.assertScreen("% foo", "foo    foobar ", "% foobar ");
+    term.read('\r');
+    assertEquals("foobar ", line.get());
+  }
+
+  @Test
+  public void testCompletionCacheExpires() {
+    TestTerm term = new TestTerm(this);
+    AtomicInteger count = new AtomicInteger();
+    CompletionCache cache = new CompletionCache(provider(count, "abc", "abd")).setMaxAge(0, TimeUnit.NANOSECONDS);
+    term.readlineComplete(cache);
+    term.read('a', '\t');
+    term.executeTasks();
+    term.assertScreen("% ab");
+    term.read('\t');
+    term.executeTasks();
+    assertEquals(2, count.get());
+  }
+
+  @Test
+  public void testCancelCompletionWhenTyping() {
+    TestTerm term = new TestTerm(this);
+    final AtomicReference<CompletionRequest> pending = new AtomicReference<CompletionRequest>();
+    Supplier<String> line = term.readlineComplete(new CompletionCache(new CompletionProvider() {
+      @Override
+      public void provide(CompletionRequest request) {
+        pending.set(request);
+      }
+    }));
+    term.read('a', '\t');
+    assertFalse(pending.get().isCancelled());
+    term.read('b');
+    assertTrue(pending.get().isCancelled());
+    term.executeTasks();
+    term.assertScreen("% ab");
+    assertFalse(pending.get().complete(Collections.singletonList(Helper.toCodePoints("abc"))));
+    term.executeTasks();
+    term.assertScreen("% ab");
+    term.read('\r');
+    assertEquals("ab", line.get());
+  }
+
+  @Test
+  public void testCompletionTimeout() {
+    TestTerm term = new TestTerm(this);
+    final AtomicReference<CompletionRequest> pending = new AtomicReference<CompletionRequest>();
+    term.readlineComplete(new CompletionCache(new CompletionProvider() {
+      @Override
+      public void provide(CompletionRequest request) {
+        pending.set(request);
+      }
+    }));
+    term.read('a', '\t');
+    term.executeScheduledTasks();
+    assertTrue(pending.get().isCancelled());
+    term.read('b');
+    term.executeTasks();
+    term.assertScreen("% ab");
+  }
+
+  private static List<int[]> candidates(int count) {
+    List<int[]> candidates = new ArrayList<int[]>();
+    for (int i = 0;i < count;i++) {
+      candidates.add(Helper.toCodePoints(String.format("c%03d", i)));
+    }
+    return candidates;
+  }
+
+  @Test
+  public void testQueryCompletionListing() {
+    TestTerm term = new TestTerm(this);
+    Supplier<String> line = term.readlineComplete(new Consumer<Completion>() {
+      @Override
+      public void accept(Completion completion) {
+        completion.suggest(candidates(150));
+      }
+    });
+    term.read('c', '\t');
+    term.assertScreen("% c", "Display all 150 possibilities? (y or n)");
+    term.read('x');
+    assertEquals(1, term.getBellCount());
+    term.read('n');
+    term.assertScreen("% c", "Display all 150 possibilities? (y or n)", "% c");
+    term.read('d', '\r');
+    assertEquals("cd", line.get());
+  }
+
+  @Test
+  public void testPagedCompletionListing() {
+    TestTerm term = new TestTerm(this);
+    Supplier<String> line = term.readlineComplete(new Consumer<Completion>() {
+      @Override
+      public void accept(Completion completion) {
+        completion.suggest(candidates(300));
+      }
+    });
+    term.read('c', '\t');
+    term.read('y');
+    List<String> screen = term.getScreen();
+    assertEquals(22, screen.size());
+    assertEquals("c000 c001 c002 c003 c004 c005 c006 c007", screen.get(2));
+    assertEquals("c144 c145 c146 c147 c148 c149 c150 c151", screen.get(20));
+    assertEquals("--More--", screen.get(21));
+    term.read('\r');
+    screen = term.getScreen();
+    assertEquals("c152 c153 c154 c155 c156 c157 c158 c159", screen.get(21));
+    assertEquals("--More--", screen.get(22));
+    // Typed ahead keys after the listing are handled by the line
+    term.read(' ', 'd');
+    term.executeTasks();
+    screen = term.getScreen();
+    assertEquals(41, screen.size());
+    assertEquals("c296 c297 c298 c299 ", screen.get(39));
+    assertEquals("% cd", screen.get(40));
+    term.read('\r');
+    assertEquals("cd", line.get());
+  }
+
+  @Test
+  public void testStopCompletionListing() {
+    TestTerm term = new TestTerm(this);
+    term.readlineComplete(new Consumer<Completion>() {
+      @Override
+      public void accept(Completion completion) {
+        completion.suggest(candidates(300));
+      }
+    });
+    term.read('c', '\t', 'y', 'q');
+    List<String> screen = term.getScreen();
+    assertEquals(22, screen.size());
+    assertEquals("% c", screen.get(21));
+  }
 }
@@ -21,9 +21,15 @@ import org.junit.Test;
 import java.io.ByteArrayInputStream;
 import java.nio.IntBuffer;
 import java.nio.ReadOnlyBufferException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -115,4 +121,183 @@ public class EventQueueTest {
     } catch (ReadOnlyBufferException ignore) {
     }
   }
+
+  @Test
+  public void testLongestMatch() {
+    EventQueue queue = new EventQueue(new Keymap(new ByteArrayInputStream("\"a\":foo\n\"abc\":bar\n\"abc\":juu".getBytes())));
+    queue.append('a', 'b');
+    assertEquals("foo", ((FunctionEvent) queue.peek()).name());
+    queue.append('c', 'a');
+    assertEquals("juu", ((FunctionEvent) queue.next()).name());
+    assertEquals("foo", ((FunctionEvent) queue.next()).name());
+    assertFalse(queue.hasNext());
+  }
+
+  @Test
+  public void testFlyweightKeys() {
+    EventQueue queue = new EventQueue(new Keymap());
+    queue.append('a', 'a');
+    KeyEvent key = queue.next();
+    assertSame(key, queue.next());
+  }
+
+  @Test
+  public void testRingBuffer() {
+    EventQueue queue = new EventQueue(new Keymap());
+    LinkedList<Integer> expected = new LinkedList<Integer>();
+    for (int i = 0;i < 100;i++) {
+      int a = 'a' + i % 26;
+      queue.append(a, i);
+      expected.add(a);
+      expected.add(i);
+      assertEquals((int) expected.removeFirst(), queue.next().getCodePointAt(0));
+    }
+    int[] buffer = queue.clear();
+    assertEquals(expected.size(), buffer.length);
+    for (int i = 0;i < buffer.length;i++) {
+      assertEquals((int) expected.get(i), buffer[i]);
+    }
+    assertFalse(queue.hasNext());
+  }
+
+  @Test
+  public void testMatchLikeLinearScan() {
+    Random random = new Random(0);
+    List<KeyEvent> bindings = new ArrayList<KeyEvent>();
+    for (int i = 0;i < 300;i++) {
+      int[] seq = new int[1 + random.nextInt(4)];
+      for (int j = 0;j < seq.length;j++) {
+        seq[j] = 'a' + random.nextInt(4);
+      }
+      bindings.add(new FunctionEvent("f" + i, seq));
+    }
+    Keymap keymap = new Keymap(bindings);
+    for (int i = 0;i < 1000;i++) {
+      int[] seq = new int[1 + random.nextInt(6)];
+      for (int j = 0;j < seq.length;j++) {
+        seq[j] = 'a' + random.nextInt(5);
+      }
+      EventQueue queue = new EventQueue(keymap).append(seq);
+      assertSame(linearMatch(bindings, seq), queue.peek() instanceof FunctionEvent ? queue.peek() : null);
+    }
+  }
+
+  /**
+   * The reference linear scan : the longest (and last) binding matching a prefix of the sequence.
+   */
+  private static KeyEvent linearMatch(List<KeyEvent> bindings, int[] seq) {
+    KeyEvent candidate = null;
+    next:
+    for (KeyEvent binding : bindings) {
+      if (binding.length() <= seq.length) {
+        for (int i = 0;i < binding.length();i++) {
+          if (binding.getCodePointAt(i) != seq[i]) {
+            continue next;
+          }
+        }
+        if (candidate == null || candidate.length() <= binding.length()) {
+          candidate = binding;
+        }
+      }
+    }
+    return candidate;
+  }
+
+  @Test
+  public void testBracketedPaste() {
+    EventQueue queue = new EventQueue(new Keymap(new ByteArrayInputStream("\"\\C-m\":accept-line".getBytes()))).setBracketedPaste(true);
+    queue.append('a', 27, '[', '2', '0');
+    assertEquals('a', queue.next().getCodePointAt(0));
+    assertFalse(queue.hasNext());
+    queue.append('0', '~', 'b', '\r', '\r', '\n', 'c', 27, '[', '2');
+    assertFalse(queue.hasNext());
+    queue.append('0', '1', '~', '\r');
+    KeyEvent paste = queue.next();
+    assertTrue(paste instanceof PasteEvent);
+    assertEquals("b\n\nc", new String(((PasteEvent) paste).text(), 0, paste.length()));
+    assertEquals("accept-line", ((FunctionEvent) queue.next()).name());
+    assertFalse(queue.hasNext());
+  }
+
+  @Test
+  public void testBracketedPasteDisabled() {
+    EventQueue queue = new EventQueue(new Keymap());
+    queue.append(27, '[', '2', '0', '0', '~', 'a', 27, '[', '2', '0', '1', '~');
+    assertEquals(27, queue.next().getCodePointAt(0));
+    assertFalse(queue.peek() instanceof PasteEvent);
+  }
+
+  @Test
+  public void testExpirePrefix() {
+    EventQueue queue = new EventQueue(new Keymap(new ByteArrayInputStream("\"\\e[A\":foo".getBytes())));
+    queue.append(27, '[');
+    assertFalse(queue.hasNext());
+    assertTrue(queue.hasPrefix());
+    assertTrue(queue.expire());
+    assertEquals(27, queue.next().getCodePointAt(0));
+    assertEquals('[', queue.next().getCodePointAt(0));
+    assertFalse(queue.hasNext());
+    assertFalse(queue.hasPrefix());
+    assertFalse(queue.expire());
+    // The next sequence is decoded as usual
+    queue.append(27);
+    assertFalse(queue.hasNext());
+    queue.append('[', 'A');
+    assertEquals("foo", ((FunctionEvent) queue.next()).name());
+    assertFalse(queue.hasNext());
+  }
+
+  @Test
+  public void testExpireBracketedPaste() {
+    EventQueue queue = new EventQueue(new Keymap()).setBracketedPaste(true);
+    queue.append(27, '[', '2', '0');
+    assertTrue(queue.expire());
+    assertEquals(27, queue.next().getCodePointAt(0));
+    queue.clear();
+    // A started paste waits for its end
+    queue.append(27, '[', '2', '0', '0', '~', 'a');
+    assertFalse(queue.hasNext());
+    assertTrue(queue.hasPrefix());
+    queue.append(27, '[', '2', '0', '1', '~');
+    assertTrue(queue.next() instanceof PasteEvent);
+    // Until it expires
+    queue.append(27, '[', '2', '0', '0', '~', 'b', '\r', 27, '[', '2');
+    assertTrue(queue.expire());
+    KeyEvent paste = queue.next();
+    assertTrue(paste instanceof PasteEvent);
+    assertEquals("b\n\u001b[2", new String(((PasteEvent) paste).text(), 0, paste.length()));
+    assertFalse(queue.hasNext());
+    // The next code points are decoded as usual
+    queue.append('c');
+    assertEquals('c', queue.next().getCodePointAt(0));
+  }
+
+  @Test
+  public void testBracketedPasteMaxLength() {
+    EventQueue queue = new EventQueue(new Keymap()).setBracketedPaste(true);
+    int[] chunk = new int[1024];
+    Arrays.fill(chunk, 'a');
+    queue.append(27, '[', '2', '0', '0', '~');
+    int length = 0;
+    while (!queue.hasNext()) {
+      queue.append(chunk);
+      length += chunk.length;
+    }
+    assertTrue(length <= EventQueue.MAX_PASTE_LENGTH + chunk.length);
+    KeyEvent paste = queue.next();
+    assertTrue(paste instanceof PasteEvent);
+    int received = paste.length();
+    assertFalse(queue.hasNext());
+    // The rest of the paste is not decoded with the bindings
+    queue.append('\r', 'b', 27, '[', '2', '0', '1', '~', 'c');
+    paste = queue.next();
+    assertTrue(paste instanceof PasteEvent);
+    assertEquals('\n', paste.getCodePointAt(paste.length() - 2));
+    assertEquals('b', paste.getCodePointAt(paste.length() - 1));
+    received += paste.length();
+    assertEquals(length + 2, received);
+    assertEquals('c', queue.next().getCodePointAt(0));
+    assertFalse(queue.hasNext());
+  }
+
 }
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import io.termd.core.TestBase;
+import io.termd.core.util.Helper;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class FileHistoryTest extends TestBase {
+
+  private static File createFile() throws IOException {
+    File file = File.createTempFile("termd", ".history");
+    file.deleteOnExit();
+    return file;
+  }
+
+  private static void write(File file, String content) throws IOException {
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(content.getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+  }
+
+  private void assertLines(List<int[]> lines, String... expected) {
+    assertEquals(expected.length, lines.size());
+    for (int i = 0;i < expected.length;i++) {
+      assertEquals(expected[i], Helper.fromCodePoints(lines.get(i)));
+    }
+  }
+
+  @Test
+  public void testPersist() throws Exception {
+    File file = createFile();
+    FileHistory history = new FileHistory(file);
+    history.add(Helper.toCodePoints("ls -al"));
+    history.add(Helper.toCodePoints("echo \"a\nb\" \\"));
+    history.add(Helper.toCodePoints("echo € 😀"));
+    history.close();
+    history = new FileHistory(file);
+    assertLines(history.snapshot(), "echo € 😀", "echo \"a\nb\" \\", "ls -al");
+    history.close();
+  }
+
+  @Test
+  public void testLoadMostRecent() throws Exception {
+    File file = createFile();
+    StringBuilder content = new StringBuilder();
+    for (int i = 0;i < 100000;i++) {
+      content.append("line ").append(i).append('\n');
+    }
+    write(file, content.toString());
+    FileHistory history = new FileHistory(file, 3, FileHistory.DEFAULT_MAX_FILE_SIZE * 16);
+    assertLines(history.snapshot(), "line 99999", "line 99998", "line 99997");
+    history.close();
+  }
+
+  @Test
+  public void testLoadAcrossChunks() throws Exception {
+    File file = createFile();
+    StringBuilder content = new StringBuilder();
+    for (int i = 0;i < 2000;i++) {
+      content.append("line ").append(i);
+      for (int j = 0;j < i % 50;j++) {
+        content.append(" \u20ac");
+      }
+      content.append('\n');
+    }
+    write(file, content.toString());
+    FileHistory history = new FileHistory(file, 1000, FileHistory.DEFAULT_MAX_FILE_SIZE * 16);
+    List<int[]> lines = history.snapshot();
+    assertEquals(1000, lines.size());
+    for (int i = 0;i < 1000;i++) {
+      String line = Helper.fromCodePoints(lines.get(i));
+      assertTrue(line.startsWith("line " + (1999 - i)));
+      assertEquals(6 + String.valueOf(1999 - i).length() - 1 + 2 * ((1999 - i) % 50), line.length());
+    }
+    history.close();
+  }
+
+  @Test
+  public void testPartialRecord() throws Exception {
+    File file = createFile();
+    write(file, "abc\nde");
+    FileHistory history = new FileHistory(file);
+    assertLines(history.snapshot(), "de", "abc");
+    history.add(Helper.toCodePoints("fgh"));
+    history.close();
+    history = new FileHistory(file);
+    assertLines(history.snapshot(), "fgh", "de", "abc");
+    history.close();
+  }
+
+  @Test
+  public void testCompact() throws Exception {
+    File file = createFile();
+    FileHistory history = new FileHistory(file, 100, 64);
+    for (int i = 0;i < 100;i++) {
+      history.add(Helper.toCodePoints("line " + i));
+      history.flush();
+      assertTrue(file.length() <= 64);
+    }
+    history.close();
+    history = new FileHistory(file, 100, 64);
+    List<int[]> lines = history.snapshot();
+    assertTrue(lines.size() > 1);
+    for (int i = 0;i < lines.size();i++) {
+      assertEquals("line " + (99 - i), Helper.fromCodePoints(lines.get(i)));
+    }
+    history.close();
+  }
+
+  @Test
+  public void testAddAfterClose() throws Exception {
+    File file = createFile();
+    FileHistory history = new FileHistory(file);
+    history.add(Helper.toCodePoints("abc"));
+    history.close();
+    history.add(Helper.toCodePoints("def"));
+    assertLines(history.snapshot(), "def", "abc");
+    history = new FileHistory(file);
+    assertLines(history.snapshot(), "abc");
+    history.close();
+  }
+
+  @Test
+  public void testCloseTwice() throws Exception {
+    File file = createFile();
+    FileHistory history = new FileHistory(file);
+    history.add(Helper.toCodePoints("abc"));
+    history.close();
+    history.close();
+    history.flush();
+    history = new FileHistory(file);
+    assertLines(history.snapshot(), "abc");
+    history.close();
+  }
+
+  @Test
+  public void testReadline() throws Exception {
+    File file = createFile();
+    FileHistory history = new FileHistory(file);
+    TestTerm term = new TestTerm(this);
+    term.readline.setHistory(history);
+    term.readlineComplete();
+    term.read('a', 'b', 'c', '\r');
+    history.close();
+    history = new FileHistory(file);
+    assertLines(history.snapshot(), "abc");
+    history.close();
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import io.termd.core.util.Helper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the heap retained per history line by the {@link History} of many sessions compared to the
+ * {@code List<int[]>} histories, run it with {@code java -cp ... io.termd.core.readline.HistoryBenchmark}.<p/>
+ *
+ * The sessions type commands picked from a set of distinct commands, the number of sessions and of distinct
+ * commands can be passed as arguments.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class HistoryBenchmark {
+
+  private static final int LINES = History.DEFAULT_CAPACITY;
+
+  public static void main(String[] args) {
+    int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    System.out.println(String.format("%-10s %-10s %16s %16s", "sessions", "distinct", "int[] B/line", "History B/line"));
+    for (int distinct : new int[] { 100, 10000, sessions * LINES }) {
+      if (args.length > 1) {
+        distinct = Integer.parseInt(args[1]);
+      }
+      String[] commands = commands(distinct);
+      long lists = measure(new ListSessions(), sessions, commands);
+      long histories = measure(new HistorySessions(), sessions, commands);
+      System.out.println(String.format("%-10d %-10d %16.1f %16.1f", sessions, distinct,
+          lists / (double) (sessions * LINES), histories / (double) (sessions * LINES)));
+      if (args.length > 1) {
+        break;
+      }
+    }
+  }
+
+  private static String[] commands(int distinct) {
+    Random random = new Random(0);
+    String[] words = { "ls", "-al", "cd", "/var/log", "grep", "ERROR", "tail", "-f", "server.log", "kubectl", "get",
+        "pods", "-n", "production", "git", "status", "docker", "ps", "|", "wc", "-l" };
+    String[] commands = new String[distinct];
+    for (int i = 0;i < distinct;i++) {
+      StringBuilder sb = new StringBuilder();
+      int count = 3 + random.nextInt(5);
+      for (int j = 0;j < count;j++) {
+        sb.append(words[random.nextInt(words.length)]).append(' ');
+      }
+      commands[i] = sb.append(i).toString();
+    }
+    return commands;
+  }
+
+  private static long measure(Sessions sessions, int count, String[] commands) {
+    Random random = new Random(0);
+    long before = usedMemory();
+    for (int i = 0;i < count;i++) {
+      for (int j = 0;j < LINES;j++) {
+        // Each accepted line is a new array like the one of the line buffer
+        sessions.add(i, Helper.toCodePoints(commands[random.nextInt(commands.length)]));
+      }
+    }
+    long used = usedMemory() - before;
+    if (sessions.size() != count) {
+      throw new AssertionError();
+    }
+    return used;
+  }
+
+  private static long usedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0;i < 5;i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private interface Sessions {
+    void add(int session, int[] line);
+    int size();
+  }
+
+  private static class ListSessions implements Sessions {
+    private final List<List<int[]>> sessions = new ArrayList<List<int[]>>();
+    public void add(int session, int[] line) {
+      if (session == sessions.size()) {
+        sessions.add(new ArrayList<int[]>());
+      }
+      sessions.get(session).add(0, line);
+    }
+    public int size() {
+      return sessions.size();
+    }
+  }
+
+  private static class HistorySessions implements Sessions {
+    private final List<History> sessions = new ArrayList<History>();
+    public void add(int session, int[] line) {
+      if (session == sessions.size()) {
+        sessions.add(new History(LINES));
+      }
+      sessions.get(session).add(line);
+    }
+    public int size() {
+      return sessions.size();
+    }
+  }
+}
@@ -17,9 +17,17 @@
 package io.termd.core.readline;
 
 import io.termd.core.TestBase;
+import io.termd.core.function.Supplier;
 import io.termd.core.util.Helper;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
 /**
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
@@ -69,4 +77,318 @@ public class HistoryTest extends TestBase {
     term.read('\r');
     assertEquals(0, term.readline.getHistory().size());
   }
+
+  @Test
+  public void testCapacity() {
+    History history = new History(3);
+    for (int i = 0;i < 20;i++) {
+      history.add(new int[]{i});
+      assertEquals(Math.min(i + 1, 3), history.size());
+      List<int[]> snapshot = history.snapshot();
+      for (int j = 0;j < snapshot.size();j++) {
+        assertEquals(i - j, snapshot.get(j)[0]);
+      }
+    }
+  }
+
+  @Test
+  public void testSnapshot() {
+    History history = new History(2);
+    history.add(new int[]{0});
+    history.add(new int[]{1});
+    List<int[]> snapshot = history.snapshot();
+    for (int i = 2;i < 10;i++) {
+      history.add(new int[]{i});
+    }
+    assertEquals(2, snapshot.size());
+    assertEquals(1, snapshot.get(0)[0]);
+    assertEquals(0, snapshot.get(1)[0]);
+    try {
+      snapshot.add(new int[]{10});
+      fail("Snapshot should be immutable");
+    } catch (UnsupportedOperationException ignore) {
+    }
+  }
+
+  @Test
+  public void testLegacyList() {
+    TestTerm term = new TestTerm(this);
+    List<int[]> list = term.readline.getHistory();
+    list.add(Helper.toCodePoints("abc"));
+    list.add(0, Helper.toCodePoints("def"));
+    assertEquals(2, term.readline.history().size());
+    assertEquals("def", Helper.fromCodePoints(term.readline.history().snapshot().get(0)));
+    list.remove(0);
+    assertEquals("abc", Helper.fromCodePoints(term.readline.history().snapshot().get(0)));
+    term.readline.setHistory(Arrays.asList(Helper.toCodePoints("ghi")));
+    assertEquals(1, term.readline.getHistory().size());
+    assertEquals("ghi", Helper.fromCodePoints(term.readline.getHistory().get(0)));
+  }
+
+  @Test
+  public void testSharedHistory() {
+    History history = new History();
+    TestTerm term1 = new TestTerm(this);
+    TestTerm term2 = new TestTerm(this);
+    term1.readline.setHistory(history);
+    term2.readline.setHistory(history);
+    term1.readlineComplete();
+    term1.read('a', 'b', 'c', '\r');
+    term2.readlineComplete();
+    term2.read(Keys.UP.sequence);
+    term2.assertScreen("% abc");
+  }
+
+  @Test
+  public void testConcurrentAdd() throws Exception {
+    final History history = new History(100);
+    final int threads = 4;
+    final int lines = 10000;
+    final CountDownLatch start = new CountDownLatch(1);
+    Thread[] workers = new Thread[threads];
+    for (int i = 0;i < threads;i++) {
+      final int id = i;
+      workers[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          for (int j = 0;j < lines;j++) {
+            history.add(new int[]{id, j});
+          }
+        }
+      };
+      workers[i].start();
+    }
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    List<int[]> snapshot = history.snapshot();
+    assertEquals(100, snapshot.size());
+    Set<String> seen = new HashSet<String>();
+    int[] last = new int[threads];
+    Arrays.fill(last, Integer.MAX_VALUE);
+    for (int[] line : snapshot) {
+      assertTrue(seen.add(Arrays.toString(line)));
+      // Each thread lines are ordered
+      assertTrue(line[1] < last[line[0]]);
+      last[line[0]] = line[1];
+    }
+  }
+
+  @Test
+  public void testCompactLines() {
+    int[] line = Helper.toCodePoints("echo é € 😀 \n");
+    assertEquals(line, HistoryLines.decode(HistoryLines.encode(line)));
+    assertTrue(HistoryLines.encode(line) == HistoryLines.encode(line.clone()));
+    History history1 = new History();
+    History history2 = new History();
+    history1.add(line);
+    history2.add(line.clone());
+    assertEquals(line, history1.snapshot().get(0));
+    assertEquals(line, history2.snapshot().get(0));
+  }
+
+  @Test
+  public void testReverseSearch() {
+    TestTerm term = new TestTerm(this);
+    History history = term.readline.history();
+    history.add(Helper.toCodePoints("ls -al"));
+    history.add(Helper.toCodePoints("git status"));
+    history.add(Helper.toCodePoints("grep foo"));
+    history.add(Helper.toCodePoints("git commit"));
+    Supplier<String> line = term.readlineComplete();
+    term.read('x');
+    term.read(18);
+    term.assertScreen("(reverse-i-search)`': x");
+    term.read('g', 'i');
+    term.assertScreen("(reverse-i-search)`gi': git commit");
+    term.read('t');
+    term.assertScreen("(reverse-i-search)`git': git commit");
+    term.assertAt(0, 25);
+    term.read(18);
+    term.assertScreen("(reverse-i-search)`git': git status");
+    assertEquals(0, term.getBellCount());
+    term.read(18);
+    term.assertScreen("(failed reverse-i-search)`git': git stat", "us");
+    assertEquals(1, term.getBellCount());
+    term.read(127);
+    term.read(127);
+    term.read('r');
+    term.assertScreen("(reverse-i-search)`gr': grep foo", "");
+    term.read('\r');
+    assertEquals("grep foo", line.get());
+  }
+
+  @Test
+  public void testReverseSearchAbort() {
+    TestTerm term = new TestTerm(this);
+    term.readline.history().add(Helper.toCodePoints("abc"));
+    Supplier<String> line = term.readlineComplete();
+    term.read('d', 'e', 'f');
+    term.read(18);
+    term.read('b');
+    term.assertScreen("(reverse-i-search)`b': abc");
+    term.read(7);
+    term.assertScreen("% def");
+    term.assertAt(0, 5);
+    term.read('g', '\r');
+    assertEquals("defg", line.get());
+  }
+
+  @Test
+  public void testReverseSearchEdit() {
+    TestTerm term = new TestTerm(this);
+    term.readline.history().add(Helper.toCodePoints("abcdef"));
+    Supplier<String> line = term.readlineComplete();
+    term.read(18);
+    term.read('c', 'd');
+    term.assertAt(0, 26);
+    // The key ending the search is handled with the matched line
+    term.read(Keys.CTRL_E.sequence);
+    term.assertScreen("% abcdef");
+    term.assertAt(0, 8);
+    term.read('g', '\r');
+    assertEquals("abcdefg", line.get());
+  }
+
+  @Test
+  public void testReverseSearchIndex() {
+    Random random = new Random(0);
+    History history = new History(300);
+    String[] words = { "ls", "git", "grep", "cd", "é", "😀", "a", "ab" };
+    for (int i = 0;i < 2000;i++) {
+      StringBuilder sb = new StringBuilder();
+      for (int j = random.nextInt(4);j >= 0;j--) {
+        sb.append(words[random.nextInt(words.length)]).append(' ');
+      }
+      history.add(Helper.toCodePoints(sb.toString()));
+      if (i % 50 == 0) {
+        history.set(history.snapshot().subList(0, history.size() / 2));
+      }
+      String query = words[random.nextInt(words.length)] + (random.nextBoolean() ? " " : "");
+      byte[] bytes = HistoryLines.utf8(Helper.toCodePoints(query));
+      History.Window window = history.window();
+      long before = window.startSeq() + random.nextInt(window.size() + 1);
+      long expected = -1;
+      for (long seq = before - 1;seq >= window.startSeq();seq--) {
+        if (Helper.fromCodePoints(HistoryLines.decode(window.bytes(seq))).contains(query)) {
+          expected = seq;
+          break;
+        }
+      }
+      assertEquals(expected, history.index().search(bytes, before));
+    }
+  }
+
+  @Test
+  public void testReverseSearchLargeHistory() {
+    History history = new History(100000);
+    for (int i = 0;i < 200000;i++) {
+      history.add(Helper.toCodePoints("echo line " + i));
+    }
+    HistoryIndex index = history.index();
+    long end = history.window().endSeq();
+    assertEquals(end - 1, index.search(HistoryLines.utf8(Helper.toCodePoints("199999")), Long.MAX_VALUE));
+    assertEquals(end - 1 - 99999, index.search(HistoryLines.utf8(Helper.toCodePoints("line 100000")), Long.MAX_VALUE));
+    assertEquals(-1L, index.search(HistoryLines.utf8(Helper.toCodePoints("line 99999")), Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testAutosuggest() {
+    TestTerm term = new TestTerm(this);
+    term.readline.setAutosuggest(true);
+    History history = term.readline.history();
+    history.add(Helper.toCodePoints("git status"));
+    history.add(Helper.toCodePoints("git commit"));
+    history.add(Helper.toCodePoints("ls"));
+    term.readlineComplete();
+    term.read('g');
+    term.assertScreen("% git commit");
+    term.assertAt(0, 3);
+    term.read('i', 't', ' ', 's');
+    term.assertScreen("% git status");
+    term.assertAt(0, 7);
+    term.read('x');
+    term.assertScreen("% git sx");
+    term.assertAt(0, 8);
+    term.read(127);
+    term.assertScreen("% git status");
+    term.read(Keys.LEFT.sequence);
+    term.assertScreen("% git s");
+    term.assertAt(0, 6);
+  }
+
+  @Test
+  public void testAcceptAutosuggestion() {
+    TestTerm term = new TestTerm(this);
+    term.readline.setAutosuggest(true);
+    term.readline.history().add(Helper.toCodePoints("echo hello"));
+    Supplier<String> line = term.readlineComplete();
+    term.read('e', 'c');
+    term.read(Keys.RIGHT.sequence);
+    term.assertScreen("% echo hello");
+    term.assertAt(0, 12);
+    term.read('\r');
+    assertEquals("echo hello", line.get());
+  }
+
+  @Test
+  public void testAutosuggestFitsRow() {
+    TestTerm term = new TestTerm(this);
+    term.readline.setAutosuggest(true);
+    StringBuilder sb = new StringBuilder("x");
+    for (int i = 0;i < 60;i++) {
+      sb.append(i % 10);
+    }
+    term.readline.history().add(Helper.toCodePoints(sb.toString()));
+    Supplier<String> line = term.readlineComplete();
+    term.read('x');
+    term.assertScreen("% " + sb.substring(0, 37));
+    term.assertAt(0, 3);
+    term.read(Keys.RIGHT.sequence);
+    term.read('\r');
+    assertEquals(sb.toString(), line.get());
+  }
+
+  @Test
+  public void testSuggestMostRecent() {
+    History history = new History(3);
+    HistoryTrie trie = history.trie();
+    int[] prefix = Helper.toCodePoints("ab");
+    assertNull(trie.suggest(prefix, 2));
+    history.add(Helper.toCodePoints("abc"));
+    history.add(Helper.toCodePoints("abd"));
+    assertEquals("d", Helper.fromCodePoints(trie.suggest(prefix, 2)));
+    history.add(Helper.toCodePoints("ab"));
+    assertEquals("d", Helper.fromCodePoints(trie.suggest(prefix, 2)));
+    history.add(Helper.toCodePoints("abc"));
+    assertEquals("c", Helper.fromCodePoints(trie.suggest(prefix, 2)));
+    history.add(Helper.toCodePoints("a\nb"));
+    assertEquals("c", Helper.fromCodePoints(trie.suggest(prefix, 2)));
+    for (int i = 0;i < 10;i++) {
+      history.add(Helper.toCodePoints("x"));
+    }
+    assertNull(trie.suggest(prefix, 2));
+  }
+
+  @Test
+  public void testSuggestDiscarded() {
+    History history = new History(4);
+    HistoryTrie trie = history.trie();
+    int[] prefix = Helper.toCodePoints("ab");
+    history.add(Helper.toCodePoints("abc"));
+    history.add(Helper.toCodePoints("x"));
+    assertEquals("c", Helper.fromCodePoints(trie.suggest(prefix, 2)));
+    history.add(Helper.toCodePoints("y"));
+    history.add(Helper.toCodePoints("z"));
+    history.add(Helper.toCodePoints("w"));
+    assertNull(trie.suggest(prefix, 2));
+    history.add(Helper.toCodePoints("abd"));
+    assertEquals("d", Helper.fromCodePoints(trie.suggest(prefix, 2)));
+  }
 }
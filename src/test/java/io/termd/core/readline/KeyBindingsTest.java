@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import io.termd.core.readline.functions.BackwardChar;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class KeyBindingsTest {
+
+  private static final Function MY_FUNC = new Function() {
+    @Override
+    public String name() {
+      return "my-func";
+    }
+    @Override
+    public void apply(Readline.Interaction interaction) {
+    }
+  };
+
+  @Test
+  public void testResolveFunctions() {
+    Keymap keymap = new Keymap().bindFunction("\\C-g", "my-func").bindFunction("\\C-j", "other-func");
+    KeyBindings bindings = KeyBindings.compile(keymap, Collections.singletonList(MY_FUNC));
+    EventQueue eq = new EventQueue(bindings);
+    eq.append('G' - 64, 'J' - 64);
+    assertSame(MY_FUNC, ((FunctionEvent) eq.next()).function());
+    assertNull(((FunctionEvent) eq.next()).function());
+    assertSame(MY_FUNC, bindings.getFunction("my-func"));
+    assertSame(Readline.ACCEPT_LINE, bindings.getFunction("accept-line"));
+  }
+
+  @Test
+  public void testWithFunctions() {
+    Keymap keymap = new Keymap().bindFunction("\\C-g", "my-func");
+    KeyBindings bindings = KeyBindings.compile(keymap, Collections.<Function>emptyList());
+    KeyBindings other = bindings.withFunctions(Collections.singletonList(MY_FUNC));
+    EventQueue eq = new EventQueue(bindings);
+    eq.append('G' - 64);
+    assertNull(((FunctionEvent) eq.next()).function());
+    eq = new EventQueue(other);
+    eq.append('G' - 64);
+    assertSame(MY_FUNC, ((FunctionEvent) eq.next()).function());
+    assertNull(bindings.getFunction("my-func"));
+  }
+
+  @Test
+  public void testDefault() {
+    KeyBindings bindings = KeyBindings.getDefault();
+    assertSame(bindings, KeyBindings.getDefault());
+    assertTrue(bindings.getFunction("backward-char") instanceof BackwardChar);
+    EventQueue eq = new EventQueue(bindings);
+    eq.append('\r');
+    assertSame(Readline.ACCEPT_LINE, ((FunctionEvent) eq.next()).function());
+  }
+
+  @Test
+  public void testDefaultIgnoresContextClassLoader() {
+    Thread thread = Thread.currentThread();
+    ClassLoader prev = thread.getContextClassLoader();
+    // A loader that cannot see the termd functions
+    thread.setContextClassLoader(new ClassLoader(null) {});
+    try {
+      assertTrue(Functions.loadDefaults().isEmpty());
+      assertTrue(KeyBindings.getDefault().getFunction("backward-char") instanceof BackwardChar);
+    } finally {
+      thread.setContextClassLoader(prev);
+    }
+  }
+
+  @Test
+  public void testReadlineAddFunction() {
+    KeyBindings shared = KeyBindings.compile(new Keymap().bindFunction("\\C-g", "my-func"), Collections.<Function>emptyList());
+    Readline readline = new Readline(shared);
+    assertSame(shared, readline.bindings());
+    readline.addFunction(MY_FUNC);
+    assertNotSame(shared, readline.bindings());
+    assertNull(shared.getFunction("my-func"));
+    readline.queueEvent(new int[]{'G' - 64});
+    assertSame(MY_FUNC, ((FunctionEvent) readline.nextEvent()).function());
+  }
+}
@@ -28,4 +28,16 @@ public class KeymapTest {
     assertEquals("my-func", ((FunctionEvent) eq.next()).name());
     assertFalse(eq.hasNext());
   }
+
+  @Test
+  public void testDefault() {
+    Keymap keymap = Keymap.getDefault();
+    assertFalse(keymap.bindings.isEmpty());
+    EventQueue eq = new EventQueue(keymap);
+    eq.append('\r');
+    assertEquals("accept-line", ((FunctionEvent) eq.next()).name());
+    int size = keymap.bindings.size();
+    keymap.bindFunction("\\C-g", "my-func");
+    assertEquals(size, Keymap.getDefault().bindings.size());
+  }
 }
@@ -1,8 +1,11 @@
 package io.termd.core.readline;
 
+import io.termd.core.util.Helper;
 import io.termd.core.util.Vector;
 import org.junit.Test;
 
+import java.util.Random;
+
 import static org.junit.Assert.*;
 
 /**
@@ -340,4 +343,79 @@ public class LineBufferTest {
     buffer.update(to, screen, 2);
     screen.assertCodePoints("abcde").assertEmpty();
   }
+
+  @Test
+  public void testGapEdits() {
+    LineBuffer buffer = new LineBuffer(4);
+    buffer.insert("abc\ndef");
+    buffer.setCursor(2);
+    buffer.insert('X', '\n');
+    assertEquals("abX\nc\ndef", buffer.toString());
+    buffer.setCursor(7);
+    assertEquals(2, buffer.delete(-2));
+    assertEquals("abX\ncef", buffer.toString());
+    buffer.setCursor(1);
+    assertEquals(3, buffer.delete(3));
+    assertEquals("acef", buffer.toString());
+    assertEquals(new Vector(1, 0), buffer.getCursorPosition(80));
+    buffer.insert(buffer);
+    assertEquals("aacefcef", buffer.toString());
+    assertEquals(5, buffer.getCursor());
+  }
+
+  @Test
+  public void testPositionLikeComputePosition() {
+    Random random = new Random(0);
+    StringBuilder expected = new StringBuilder();
+    LineBuffer buffer = new LineBuffer(2);
+    for (int i = 0;i < 2000;i++) {
+      int cursor = buffer.getCursor();
+      switch (random.nextInt(7)) {
+        case 0:
+        case 1: {
+          int cp = random.nextInt(5) == 0 ? '\n' : 'a' + random.nextInt(26);
+          buffer.insert(cp);
+          expected.insert(cursor, (char) cp);
+          break;
+        }
+        case 2: {
+          LineBuffer other = new LineBuffer().insert("ab\ncd\n\ne".substring(random.nextInt(8)));
+          other.setCursor(random.nextInt(other.getSize() + 1));
+          buffer.insert(other);
+          expected.insert(cursor, other.toString());
+          break;
+        }
+        case 3: {
+          int delta = random.nextInt(7) - 3;
+          int deleted = buffer.delete(delta);
+          if (delta > 0) {
+            expected.delete(cursor, cursor + deleted);
+          } else {
+            expected.delete(cursor - deleted, cursor);
+          }
+          break;
+        }
+        case 4:
+          buffer.setCursor(random.nextInt(buffer.getSize() + 1));
+          break;
+        case 5:
+          if (random.nextInt(20) == 0) {
+            int size = random.nextInt(buffer.getSize() + 1);
+            buffer.setSize(size);
+            expected.setLength(size);
+          }
+          break;
+        case 6:
+          buffer = buffer.copy();
+          break;
+      }
+      assertEquals(expected.toString(), buffer.toString());
+      int[] codePoints = Helper.toCodePoints(expected.toString());
+      // Keep the width for a while so the rows are maintained by the edits
+      int width = 1 + (i / 100) % 8;
+      for (int offset = 0;offset <= codePoints.length;offset++) {
+        assertEquals(Helper.computePosition(codePoints, new Vector(0, 0), offset, width), buffer.getPosition(offset, width));
+      }
+    }
+  }
 }
@@ -81,7 +81,7 @@ public class LineBufferUpdateTest {
     LineBuffer curr = new LineBuffer().insert("a\nbc");
     curr.update(new LineBuffer().insert("abdef"), screen, 20);
     // TODO : improve that
-    screen.assertCodePoints("\b\033[1Abdef\r\033[1B\033[K\033[1C\033[1C\033[1C\033[1C\033[1C\033[1A").assertEmpty();
+    screen.assertCodePoints("\b\033[1Abdef\r\033[1B\033[K\033[5C\033[1A").assertEmpty();
   }
 
   @Test
@@ -89,7 +89,7 @@ public class LineBufferUpdateTest {
     TestTerminal screen = new TestTerminal();
     LineBuffer curr = new LineBuffer().insert("abcde");
     curr.update(new LineBuffer().insert("aBcdEf"), screen, 20);
-    screen.assertCodePoints("\b\b\b\bB\033[1C\033[1CEf").assertEmpty();
+    screen.assertCodePoints("\b\b\b\bB\033[2CEf").assertEmpty();
   }
 
   @Test
@@ -97,7 +97,7 @@ public class LineBufferUpdateTest {
     TestTerminal screen = new TestTerminal();
     LineBuffer curr = new LineBuffer().insert("abcdefgh");
     curr.update(new LineBuffer().insert("aBcdefgHi"), screen, 4);
-    screen.assertCodePoints("\033[1C\033[1A\033[1AB\033[1C\033[1BHi").assertEmpty();
+    screen.assertCodePoints("\033[1C\033[2AB\033[1C\033[1BHi").assertEmpty();
   }
 
   @Test
@@ -137,7 +137,7 @@ public class LineBufferUpdateTest {
     TestTerminal screen = new TestTerminal();
     LineBuffer curr = new LineBuffer().insert("ab\nef");
     curr.update(new LineBuffer().insert("abcdefg"), screen, 4);
-    screen.assertCodePoints("\033[1Acd\033[1C\033[1Cg").assertEmpty();
+    screen.assertCodePoints("\033[1Acd\033[2Cg").assertEmpty();
   }
 
   @Test
@@ -161,10 +161,9 @@ public class LineBufferUpdateTest {
     TestTerminal screen = new TestTerminal();
     LineBuffer curr = new LineBuffer().insert("ab\ncd\nef\ngh");
     curr.update(new LineBuffer().insert("AbC"), screen, 20);
-    screen.assertCodePoints("\r\033[1A\033[1A\033[1AA\033[1CC\r\033[1B\033[K"
+    screen.assertCodePoints("\r\033[3AA\033[1CC\r\033[1B\033[K"
             + "\033[1B\033[K\033[1B\033[K"
-            + "\033[1C\033[1C"
-            + "\033[1C\033[1A\033[1A\033[1A"
+            + "\033[3C\033[3A"
     ).assertEmpty();
   }
 
@@ -181,7 +180,7 @@ public class LineBufferUpdateTest {
     TestTerminal screen = new TestTerminal();
     LineBuffer curr = new LineBuffer().insert("abcdefg").setCursor(2);
     curr.update(new LineBuffer().insert("ab"), screen, 4);
-    screen.assertCodePoints("\033[K\r\033[1B\033[K\033[1C\033[1C\033[1A").assertEmpty();
+    screen.assertCodePoints("\033[K\r\033[1B\033[K\033[2C\033[1A").assertEmpty();
   }
 
   @Test
@@ -189,7 +188,7 @@ public class LineBufferUpdateTest {
     TestTerminal screen = new TestTerminal();
     LineBuffer curr = new LineBuffer().insert("abcdefg").setCursor(3);
     curr.update(new LineBuffer().insert("abc"), screen, 4);
-    screen.assertCodePoints("\033[K\r\033[1B\033[K\033[1C\033[1C\033[1C\033[1A").assertEmpty();
+    screen.assertCodePoints("\033[K\r\033[1B\033[K\033[3C\033[1A").assertEmpty();
   }
 
   @Test
@@ -197,9 +196,47 @@ public class LineBufferUpdateTest {
     TestTerminal screen = new TestTerminal();
     LineBuffer curr = new LineBuffer().insert("abcdefghijk").setCursor(2);
     curr.update(new LineBuffer().insert("ab"), screen, 4);
-    // todo:
-    // optimize \033[1C + \033[1C -> \033[2C
-    // optimize \033[1A + \033[1A -> \033[2A
-    screen.assertCodePoints("\033[K\r\033[1B\033[K\033[1B\033[K\033[1C\033[1C\033[1A\033[1A").assertEmpty();
+    screen.assertCodePoints("\033[K\r\033[1B\033[K\033[1B\033[K\033[2C\033[2A").assertEmpty();
+  }
+
+  @Test
+  public void testMoveBackwardWithBackspaces() {
+    assertMove(120, 117, 200, "\b\b\b");
+  }
+
+  @Test
+  public void testMoveBackward() {
+    assertMove(120, 70, 200, "\033[50D");
+  }
+
+  @Test
+  public void testMoveForward() {
+    assertMove(10, 120, 200, "\033[110C");
+  }
+
+  @Test
+  public void testMoveToColumn() {
+    assertMove(120, 5, 200, "\033[6G");
+  }
+
+  @Test
+  public void testMoveFromLineStart() {
+    assertMove(120, 9, 200, "\r\033[9C");
+  }
+
+  @Test
+  public void testMoveAcrossRows() {
+    assertMove(165, 7, 10, "\033[2C\033[16A");
+  }
+
+  private void assertMove(int from, int to, int width, String expected) {
+    StringBuilder line = new StringBuilder();
+    for (int i = 0;i < 165;i++) {
+      line.append((char) ('a' + i % 26));
+    }
+    TestTerminal screen = new TestTerminal();
+    LineBuffer curr = new LineBuffer().insert(line.toString()).setCursor(from);
+    curr.update(new LineBuffer().insert(line.toString()).setCursor(to), screen, width);
+    screen.assertCodePoints(expected).assertEmpty();
   }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import io.termd.core.util.IntSliceBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class LineRendererTest {
+
+  @Test
+  public void testAppend() {
+    assertRender("% ", "abc", "abcd", 40, "d");
+    assertRender("% ", "", "a", 40, "a");
+    assertRender("% ", "ab\ncd", "ab\ncde", 40, "e");
+  }
+
+  @Test
+  public void testAppendWrap() {
+    assertRender("% ", "abcdefg", "abcdefgh", 10, null);
+    assertRender("% ", "ab\ncdefghi", "ab\ncdefghij", 10, null);
+    assertRender("% ", "ab\ncdefghi", "ab\ncdefghi\n", 10, null);
+  }
+
+  @Test
+  public void testEdit() {
+    assertRender("% ", "abc", "abd", 40, null);
+    assertRender("% ", "abcd", "abc", 40, null);
+    assertRender("> ", "", "", 40, null);
+  }
+
+  @Test
+  public void testInsertBeforeCursor() {
+    LineBuffer from = new LineBuffer().insert('a', 'c');
+    from.setCursor(1);
+    LineBuffer to = from.copy().insert('b');
+    assertEquals(update("% ", from, to, 40), render("% ", from, to, 40));
+  }
+
+  @Test
+  public void testReuse() {
+    LineRenderer renderer = new LineRenderer();
+    IntSliceBuilder out = new IntSliceBuilder();
+    LineBuffer from = new LineBuffer();
+    for (int i = 0;i < 100;i++) {
+      LineBuffer to = from.copy().insert('a' + i % 26);
+      String expected = update("% ", from, to, 20);
+      out.clear();
+      renderer.render(i % 2 == 0 ? "% " : "> ", from, to, 20, out);
+      if (i % 2 == 0) {
+        assertEquals(expected, out.toString());
+      }
+      from = to;
+    }
+  }
+
+  private static void assertRender(String prompt, String from, String to, int width, String expected) {
+    LineBuffer fromBuffer = new LineBuffer().insert(from);
+    LineBuffer toBuffer = new LineBuffer().insert(to);
+    String update = update(prompt, fromBuffer, toBuffer, width);
+    if (expected != null) {
+      assertEquals(expected, update);
+    }
+    assertEquals(update, render(prompt, fromBuffer, toBuffer, width));
+  }
+
+  private static String render(String prompt, LineBuffer from, LineBuffer to, int width) {
+    IntSliceBuilder out = new IntSliceBuilder();
+    new LineRenderer().render(prompt, from, to, width, out);
+    return out.toString();
+  }
+
+  /**
+   * The reference update without the fast path.
+   */
+  private static String update(String prompt, LineBuffer from, LineBuffer to, int width) {
+    LineBuffer src = new LineBuffer().insert(prompt).insert(from.toArray());
+    src.setCursor(prompt.length() + from.getCursor());
+    LineBuffer dst = new LineBuffer().insert(prompt).insert(to.toArray());
+    dst.setCursor(prompt.length() + to.getCursor());
+    IntSliceBuilder out = new IntSliceBuilder();
+    src.update(dst, out, width);
+    return out.toString();
+  }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import io.termd.core.function.BiConsumer;
+import io.termd.core.function.Consumer;
+import io.termd.core.tty.TtyConnection;
+import io.termd.core.tty.TtyConnectionSupport;
+import io.termd.core.tty.TtyEvent;
+import io.termd.core.util.Helper;
+import io.termd.core.util.IntSlice;
+import io.termd.core.util.IntSliceConsumer;
+import io.termd.core.util.Vector;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time {@link Readline} takes to insert a paste delivered in a single chunk and the same input
+ * delivered one key at a time, run it with {@code java -cp ... io.termd.core.readline.ReadlineBenchmark}.
+ *
+ * Typing costs one refresh per key which is quadratic in the line length, so it is only measured for the
+ * smaller sizes. The paste sizes in bytes can be passed as arguments.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class ReadlineBenchmark {
+
+  private static final int[] SIZES = { 1, 16, 256, 4 * 1024, 64 * 1024, 1024 * 1024 };
+  private static final int MAX_TYPED_SIZE = 4 * 1024;
+
+  public static void main(String[] args) {
+    int[] sizes = SIZES;
+    if (args.length > 0) {
+      // Custom sizes
+      sizes = new int[args.length];
+      for (int i = 0;i < args.length;i++) {
+        sizes[i] = Integer.parseInt(args[i]);
+      }
+    }
+    System.out.println(String.format("%-10s %-8s %16s %16s %16s", "size", "input", "ms/line", "output cp/line", "bytes alloc/key"));
+    for (int i = 0;i < 2;i++) {
+      // First round is warmup
+      boolean print = i == 1;
+      for (int size : sizes) {
+        int[] text = Helper.toCodePoints(repeat("ls -al /tmp | grep foo ", size));
+        int iterations = Math.max(1, 64 * 1024 / size);
+        measure(size, "paste", text, iterations, false, print);
+        if (size <= MAX_TYPED_SIZE) {
+          measure(size, "typed", text, iterations, true, print);
+        }
+      }
+    }
+  }
+
+  private static void measure(int size, String input, int[] text, int iterations, boolean typed, boolean print) {
+    BenchmarkConnection conn = new BenchmarkConnection();
+    Readline readline = new Readline(KeyBindings.getDefault());
+    IntSlice key = new IntSlice();
+    long allocated = allocatedBytes();
+    long now = System.nanoTime();
+    for (int i = 0;i < iterations;i++) {
+      readline.readline(conn, "% ", new Consumer<String>() {
+        @Override
+        public void accept(String line) {
+        }
+      });
+      IntSliceConsumer stdin = (IntSliceConsumer) conn.stdin;
+      if (typed) {
+        for (int j = 0;j < text.length;j++) {
+          stdin.accept(key.set(text, j, 1));
+        }
+      } else {
+        stdin.accept(key.set(text, 0, text.length));
+      }
+      readline.cancel();
+    }
+    long elapsed = System.nanoTime() - now;
+    allocated = allocatedBytes() - allocated;
+    if (print) {
+      System.out.println(String.format("%-10d %-8s %16.3f %16d %16d", size, input, elapsed / 1000000D / iterations,
+          conn.count / iterations, allocated / iterations / text.length));
+    }
+  }
+
+  private static long allocatedBytes() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return 0;
+  }
+
+  private static String repeat(String s, int size) {
+    StringBuilder sb = new StringBuilder(size);
+    while (sb.length() < size) {
+      sb.append(s);
+    }
+    sb.setLength(size);
+    return sb.toString();
+  }
+
+  private static class BenchmarkConnection extends TtyConnectionSupport {
+
+    private Consumer<int[]> stdin;
+    private Consumer<Vector> sizeHandler;
+    private BiConsumer<TtyEvent, Integer> eventHandler;
+    private long count;
+    private final IntSliceConsumer stdout = new IntSliceConsumer() {
+      @Override
+      public void accept(IntSlice data) {
+        count += data.length();
+      }
+      @Override
+      public void accept(int[] data) {
+        count += data.length;
+      }
+    };
+
+    @Override
+    public Charset inputCharset() {
+      return Charset.forName("UTF-8");
+    }
+
+    @Override
+    public Charset outputCharset() {
+      return Charset.forName("UTF-8");
+    }
+
+    @Override
+    public long lastAccessedTime() {
+      return 0;
+    }
+
+    @Override
+    public String terminalType() {
+      return "xterm";
+    }
+
+    @Override
+    public Vector size() {
+      return new Vector(80, 24);
+    }
+
+    @Override
+    public Consumer<String> getTerminalTypeHandler() {
+      return null;
+    }
+
+    @Override
+    public void setTerminalTypeHandler(Consumer<String> handler) {
+    }
+
+    @Override
+    public Consumer<Vector> getSizeHandler() {
+      return sizeHandler;
+    }
+
+    @Override
+    public void setSizeHandler(Consumer<Vector> handler) {
+      sizeHandler = handler;
+    }
+
+    @Override
+    public BiConsumer<TtyEvent, Integer> getEventHandler() {
+      return eventHandler;
+    }
+
+    @Override
+    public void setEventHandler(BiConsumer<TtyEvent, Integer> handler) {
+      eventHandler = handler;
+    }
+
+    @Override
+    public Consumer<int[]> getStdinHandler() {
+      return stdin;
+    }
+
+    @Override
+    public void setStdinHandler(Consumer<int[]> handler) {
+      stdin = handler;
+    }
+
+    @Override
+    public Consumer<int[]> stdoutHandler() {
+      return stdout;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+      task.run();
+    }
+
+    @Override
+    public void schedule(Runnable task, long delay, TimeUnit unit) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Consumer<Void> getCloseHandler() {
+      return null;
+    }
+
+    @Override
+    public void setCloseHandler(Consumer<Void> closeHandler) {
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
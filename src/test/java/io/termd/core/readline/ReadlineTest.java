@@ -5,11 +5,15 @@ import io.termd.core.function.BiConsumer;
 import io.termd.core.function.Consumer;
 import io.termd.core.function.Supplier;
 import io.termd.core.tty.TtyEvent;
+import io.termd.core.util.Helper;
 import io.termd.core.util.Vector;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
@@ -495,4 +499,177 @@ public class ReadlineTest extends TestBase {
     term.assertAt(0, 2);
     term.assertScreen("% a");
   }
+
+  @Test
+  public void testPasteLikeTyping() {
+    assertPasteLikeTyping(Helper.toCodePoints("hello world"));
+    assertPasteLikeTyping(Helper.toCodePoints("0123456789012345678901234567890123456789012345678901234567890123456789"));
+    assertPasteLikeTyping(new int[]{'a', 'b', 2, 'c', 'd', 2, 2, 'e'});
+    assertPasteLikeTyping(new int[]{'a', 'b', 'c', 'd', 27, '[', 'D', 27, '[', 'D', 'X', 'Y', 'Z', 1, 'W'});
+  }
+
+  private void assertPasteLikeTyping(int[] paste) {
+    TestTerm typed = new TestTerm(this);
+    typed.readlineComplete();
+    for (int codePoint : paste) {
+      typed.read(codePoint);
+    }
+    TestTerm pasted = new TestTerm(this);
+    pasted.readlineComplete();
+    pasted.read(paste);
+    assertEquals(typed.getScreen(), pasted.getScreen());
+    assertEquals(typed.getBellCount(), pasted.getBellCount());
+    assertEquals(typed.readline.getHistory().size(), pasted.readline.getHistory().size());
+    pasted.assertAt(typed.getRow(), typed.getCursor());
+  }
+
+  @Test
+  public void testBracketedPaste() {
+    TestTerm term = new TestTerm(this);
+    term.readline.setBracketedPaste(true);
+    Supplier<String> line = term.readlineComplete();
+    term.read('a');
+    term.read(27, '[', '2', '0', '0', '~', 'b', 'c', '\r', 'd', 1, 'e');
+    term.assertScreen("% a");
+    term.read(27, '[', '2', '0', '1', '~');
+    term.assertScreen("% abc", "de");
+    assertEquals(1, term.getBellCount());
+    assertNull(line.get());
+    term.read('\r');
+    assertEquals("abc\nde", line.get());
+  }
+
+  @Test
+  public void testPrintAbove() {
+    TestTerm term = new TestTerm(this);
+    assertFalse(term.readline.printAbove("too early"));
+    Supplier<String> line = term.readlineComplete();
+    term.read('a', 'b', 'c');
+    term.read(BACKWARD_KEY);
+    assertTrue(term.readline.printAbove("job 1 done"));
+    assertTrue(term.readline.printAbove("job 2 done\n"));
+    term.assertScreen("% abc");
+    term.executeTasks();
+    term.assertScreen("job 1 done", "job 2 done", "% abc");
+    term.assertAt(2, 4);
+    term.read('d', '\r');
+    assertEquals("abdc", line.get());
+  }
+
+  @Test
+  public void testPrintAboveWrappedLine() {
+    TestTerm term = new TestTerm(this);
+    term.readlineComplete();
+    for (int i = 0;i < 45;i++) {
+      term.read('a' + i % 26);
+    }
+    term.assertAt(1, 7);
+    term.readline.printAbove("log");
+    term.executeTasks();
+    term.assertScreen("log", "% abcdefghijklmnopqrstuvwxyzabcdefghijkl", "mnopqrs");
+    term.assertAt(2, 7);
+  }
+
+  @Test
+  public void testPrintAboveDuringListing() {
+    TestTerm term = new TestTerm(this);
+    List<int[]> candidates = new ArrayList<int[]>();
+    for (int i = 0;i < 100;i++) {
+      candidates.add(Helper.toCodePoints("c" + i));
+    }
+    final List<int[]> list = candidates;
+    term.readlineComplete(new Consumer<Completion>() {
+      @Override
+      public void accept(Completion completion) {
+        completion.suggest(list);
+      }
+    });
+    term.read('c', '\t');
+    term.readline.printAbove("log");
+    term.executeTasks();
+    term.assertScreen("% c", "Display all 100 possibilities? (y or n)");
+    term.read('n');
+    term.executeTasks();
+    term.assertScreen("% c", "Display all 100 possibilities? (y or n)", "log", "% c");
+  }
+
+  @Test
+  public void testResizeReflow() {
+    TestTerm term = new TestTerm(this);
+    Supplier<String> line = term.readlineComplete();
+    for (int i = 0;i < 45;i++) {
+      term.read('a' + i % 26);
+    }
+    term.assertScreen("% abcdefghijklmnopqrstuvwxyzabcdefghijkl", "mnopqrs");
+    term.setWidth(30);
+    term.setWidth(25);
+    term.setWidth(20);
+    // Nothing is repainted until the size is stable
+    term.assertScreen("% abcdefghijklmnopqrstuvwxyzabcdefghijkl", "mnopqrs");
+    term.executeScheduledTasks();
+    term.assertScreen("% abcdefghijklmnopqr", "stuvwxyzabcdefghijkl", "mnopqrs");
+    term.assertAt(2, 7);
+    term.read('t');
+    term.assertScreen("% abcdefghijklmnopqr", "stuvwxyzabcdefghijkl", "mnopqrst");
+    term.read('\r');
+    assertEquals("abcdefghijklmnopqrstuvwxyzabcdefghijklmnopqrst", line.get());
+  }
+
+  @Test
+  public void testResizeWithoutWrap() {
+    TestTerm term = new TestTerm(this);
+    term.readlineComplete();
+    term.read('a', 'b', 'c');
+    term.setWidth(10);
+    // Applied at once since the line does not wrap
+    term.read('d', 'e', 'f', 'g', 'h', 'i');
+    term.assertScreen("% abcdefgh", "i");
+    term.assertAt(1, 1);
+  }
+
+  @Test
+  public void testKeyseqTimeout() {
+    TestTerm term = new TestTerm(this);
+    term.readline.setKeyseqTimeout(1, TimeUnit.MILLISECONDS);
+    term.readline.history().add(Helper.toCodePoints("abc"));
+    Supplier<String> line = term.readlineComplete();
+    term.read(18);
+    term.read('b');
+    // A lone escape waits for the end of an arrow sequence
+    term.read(27);
+    term.assertScreen("(reverse-i-search)`b': abc");
+    term.executeScheduledTasks();
+    term.assertScreen("% abc");
+    term.read('\r');
+    assertEquals("abc", line.get());
+  }
+
+  @Test
+  public void testKeyseqTimeoutBracketedPaste() {
+    TestTerm term = new TestTerm(this);
+    term.readline.setBracketedPaste(true);
+    term.readline.setKeyseqTimeout(1, TimeUnit.MILLISECONDS);
+    Supplier<String> line = term.readlineComplete();
+    // The paste end is lost
+    term.read(27, '[', '2', '0', '0', '~', 'a', '\r', 'b');
+    term.assertScreen("% ");
+    term.executeScheduledTasks();
+    term.assertScreen("% a", "b");
+    term.read('\r');
+    assertEquals("a\nb", line.get());
+  }
+
+  @Test
+  public void testKeyseqBeforeTimeout() {
+    TestTerm term = new TestTerm(this);
+    term.readline.history().add(Helper.toCodePoints("abc"));
+    term.readlineComplete();
+    term.read(27);
+    term.read('[');
+    term.read('A');
+    term.assertScreen("% abc");
+    term.executeScheduledTasks();
+    term.assertScreen("% abc");
+    assertEquals(0, term.getBellCount());
+  }
 }
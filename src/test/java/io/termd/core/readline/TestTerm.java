@@ -53,7 +53,7 @@ import java.util.concurrent.atomic.AtomicReference;
 class TestTerm {
 
   private TestBase readlineTest;
-  private int[][] buffer = new int[10][];
+  private int[][] buffer = new int[100][];
   private int row;
   private int cursor;
   private int status = 0;
@@ -100,7 +100,9 @@ class TestTerm {
             }
             break;
           case 2:
-            if (i >= '0' && i <= '9') {
+            if (i == '?') {
+              // Private mode
+            } else if (i >= '0' && i <= '9') {
               if (acc == -1) {
                 acc = i - '0';
               } else {
@@ -128,6 +130,9 @@ class TestTerm {
                     backward();
                   }
                   break;
+                case 'G':
+                  cursor = Math.max(acc, 1) - 1;
+                  break;
                 case 'K': {
                   if (acc != -1) {
                     throw new UnsupportedOperationException("Not yet implemented");
@@ -138,6 +143,22 @@ class TestTerm {
                   }
                   break;
                 }
+                case 'J': {
+                  for (int j = cursor;j < buffer[row].length;j++) {
+                    buffer[row][j] = 0;
+                  }
+                  for (int j = row + 1;j < buffer.length;j++) {
+                    buffer[j] = null;
+                  }
+                  break;
+                }
+                case 'h':
+                case 'l':
+                  // Set / reset mode
+                  break;
+                case 'm':
+                  // Graphic rendition
+                  break;
                 default:
                   throw new UnsupportedOperationException("Implement escape sequence " + i);
               }
@@ -174,6 +195,7 @@ class TestTerm {
   Consumer<Vector> sizeHandler;
   BiConsumer<TtyEvent, Integer> eventHandler;
   private LinkedList<Runnable> tasks = new LinkedList<Runnable>();
+  private LinkedList<Runnable> scheduledTasks = new LinkedList<Runnable>();
 
   TtyConnection conn = new TtyConnectionSupport() {
 
@@ -257,7 +279,7 @@ class TestTerm {
 
     @Override
     public void schedule(Runnable task, long delay, TimeUnit unit) {
-      throw new UnsupportedOperationException();
+      scheduledTasks.add(task);
     }
 
     @Override
@@ -351,6 +373,16 @@ class TestTerm {
     }
   }
 
+  /**
+   * Execute the scheduled tasks as if their delay was elapsed.
+   */
+  public void executeScheduledTasks() {
+    while (!scheduledTasks.isEmpty()) {
+      Runnable task = scheduledTasks.removeFirst();
+      task.run();
+    }
+  }
+
   public int getBellCount() {
     return bell;
   }
@@ -377,11 +409,23 @@ class TestTerm {
     return lines;
   }
 
+  List<String> getScreen() {
+    return render();
+  }
+
   void assertScreen(String... expected) {
     List<String> lines = render();
     readlineTest.assertEquals(Arrays.asList(expected), lines);
   }
 
+  int getRow() {
+    return row;
+  }
+
+  int getCursor() {
+    return cursor;
+  }
+
   void assertAt(int row, int cursor) {
     readlineTest.assertEquals(row, this.row);
     readlineTest.assertEquals(cursor, this.cursor);
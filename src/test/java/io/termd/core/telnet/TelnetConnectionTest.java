@@ -0,0 +1,141 @@
+/*
+ * Copyright 2014 Julien Viet
+ *
+ * Julien Viet licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package io.termd.core.telnet;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class TelnetConnectionTest {
+
+  private static final byte IAC = TelnetConnection.BYTE_IAC;
+  private static final byte NOP = (byte) 241;
+
+  private class Handler extends TelnetHandler {
+    final ByteArrayOutputStream data = new ByteArrayOutputStream();
+    final List<Object> events = new ArrayList<Object>();
+    @Override
+    protected void onData(byte[] data) {
+      fail("Data should be received as ranges");
+    }
+    @Override
+    protected void onData(byte[] data, int offset, int length) {
+      this.data.write(data, offset, length);
+    }
+    @Override
+    protected void onCommand(byte command) {
+      events.add(data.size() + ":" + (command & 0xFF));
+    }
+    @Override
+    protected void onSize(int width, int height) {
+      events.add(data.size() + ":" + width + "x" + height);
+    }
+  }
+
+  private static TelnetConnection connection(TelnetHandler handler) {
+    return new TelnetConnection(handler) {
+      @Override
+      public void close() {
+      }
+      @Override
+      protected void execute(Runnable task) {
+        task.run();
+      }
+      @Override
+      protected void schedule(Runnable task, long delay, TimeUnit unit) {
+        throw new UnsupportedOperationException();
+      }
+      @Override
+      protected void send(byte[] data) {
+      }
+    };
+  }
+
+  @Test
+  public void testPlainData() {
+    byte[] bytes = new byte[1000];
+    for (int i = 0;i < bytes.length;i++) {
+      bytes[i] = (byte) (i % 128);
+    }
+    for (ByteBuf buf : new ByteBuf[]{Unpooled.wrappedBuffer(bytes), Unpooled.directBuffer().writeBytes(bytes)}) {
+      Handler handler = new Handler();
+      connection(handler).receive(buf);
+      assertArrayEquals(bytes, handler.data.toByteArray());
+      assertEquals(0, buf.readerIndex());
+      buf.release();
+    }
+  }
+
+  @Test
+  public void testReaderIndex() {
+    Handler handler = new Handler();
+    ByteBuf buf = Unpooled.wrappedBuffer(new byte[]{'a', 'b', 'c', 'd'});
+    buf.readerIndex(2);
+    connection(handler).receive(buf);
+    assertArrayEquals(new byte[]{'c', 'd'}, handler.data.toByteArray());
+  }
+
+  @Test
+  public void testCommands() {
+    byte[] bytes = {
+        'a', 'b', IAC, NOP, 'c',
+        IAC, TelnetConnection.BYTE_SB, Option.NAWS.code, 0, 80, 0, 24, IAC, TelnetConnection.BYTE_SE,
+        'd', IAC, NOP
+    };
+    for (boolean direct : new boolean[]{false, true}) {
+      // Split the data at every position to exercise the state kept across buffers
+      for (int split = 0;split <= bytes.length;split++) {
+        Handler handler = new Handler();
+        TelnetConnection conn = connection(handler);
+        conn.receive(buffer(direct, bytes, 0, split));
+        conn.receive(buffer(direct, bytes, split, bytes.length - split));
+        assertEquals("abcd", new String(handler.data.toByteArray()));
+        assertEquals("Split at " + split, "[2:241, 3:80x24, 4:241]", handler.events.toString());
+      }
+    }
+  }
+
+  @Test
+  public void testReceiveBinaryEscape() {
+    byte[] bytes = {'a', IAC, IAC, 'b', IAC, IAC};
+    for (boolean direct : new boolean[]{false, true}) {
+      for (int split = 0;split <= bytes.length;split++) {
+        Handler handler = new Handler();
+        TelnetConnection conn = connection(handler);
+        conn.receiveBinary = true;
+        conn.receive(buffer(direct, bytes, 0, split));
+        conn.receive(buffer(direct, bytes, split, bytes.length - split));
+        assertArrayEquals("Split at " + split, new byte[]{'a', IAC, 'b', IAC}, handler.data.toByteArray());
+      }
+    }
+  }
+
+  private static ByteBuf buffer(boolean direct, byte[] bytes, int offset, int length) {
+    ByteBuf buf = direct ? Unpooled.directBuffer(length) : Unpooled.buffer(length);
+    return buf.writeBytes(bytes, offset, length);
+  }
+}
@@ -2,12 +2,19 @@ package io.termd.core.tty;
 
 import io.termd.core.TestBase;
 import io.termd.core.function.Consumer;
+import io.termd.core.util.IntSlice;
+import io.termd.core.util.IntSliceConsumer;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
@@ -101,17 +108,137 @@ public class ReadBufferTest extends TestBase {
     assertEquals(0, reads.size());
     assertEquals(1, commands.size());
     commands.poll().run();
-    assertEquals(1, reads.size());
-    assertEquals(1, commands.size());
+    assertEquals(2, reads.size());
+    assertEquals(0, commands.size());
     assertEquals(reads.get(0), new int[]{'f', 'o', 'o'});
+    assertEquals(reads.get(1), new int[]{'b', 'a', 'r'});
     buf.accept(new int[]{'j', 'u', 'u'});
     assertEquals(3, reads.size());
+    assertEquals(0, commands.size());
+    assertEquals(reads.get(2), new int[]{'j', 'u', 'u'});
+  }
+
+  @Test
+  public void testAcceptBeforeDrain() throws Exception {
+    buf.accept(new int[]{'f', 'o', 'o'});
+    buf.setReadHandler(new Consumer<int[]>() {
+      @Override
+      public void accept(int[] event) {
+        reads.add(event);
+      }
+    });
     assertEquals(1, commands.size());
+    buf.accept(new int[]{'b', 'a', 'r'});
+    assertEquals(2, reads.size());
+    assertEquals(reads.get(0), new int[]{'f', 'o', 'o'});
     assertEquals(reads.get(1), new int[]{'b', 'a', 'r'});
-    assertEquals(reads.get(2), new int[]{'j', 'u', 'u'});
     commands.poll().run();
-    assertEquals(3, reads.size());
+    assertEquals(2, reads.size());
+  }
+
+  @Test
+  public void testCoalescing() throws Exception {
+    buf.setCoalescing(true);
+    buf.accept(new int[]{'f', 'o', 'o'});
+    buf.accept(new IntSlice(new int[]{'b', 'a', 'r'}, 0, 3));
+    buf.accept(new int[]{'j', 'u', 'u'});
+    buf.setReadHandler(new Consumer<int[]>() {
+      @Override
+      public void accept(int[] event) {
+        reads.add(event);
+      }
+    });
+    commands.poll().run();
+    assertEquals(1, reads.size());
+    assertEquals(new int[]{'f', 'o', 'o', 'b', 'a', 'r', 'j', 'u', 'u'}, reads.get(0));
+  }
+
+  @Test
+  public void testConcurrentDrain() throws Exception {
+    final int count = 100000;
+    final int[] expected = {0};
+    final AtomicBoolean failed = new AtomicBoolean();
+    final CountDownLatch done = new CountDownLatch(1);
+    ExecutorService exec = Executors.newSingleThreadExecutor();
+    try {
+      buf = new ReadBuffer(exec);
+      Thread producer = new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0;i < count;i++) {
+            buf.accept(new int[]{i});
+          }
+        }
+      };
+      producer.start();
+      buf.setReadHandler(new Consumer<int[]>() {
+        @Override
+        public void accept(int[] event) {
+          for (int val : event) {
+            if (val != expected[0]++) {
+              failed.set(true);
+            }
+          }
+          if (expected[0] == count) {
+            done.countDown();
+          }
+        }
+      });
+      producer.join();
+      assertTrue(done.await(10, TimeUnit.SECONDS));
+      assertFalse(failed.get());
+    } finally {
+      exec.shutdown();
+    }
+  }
+
+  @Test
+  public void testForwardSlice() throws Exception {
+    final ArrayList<IntSlice> slices = new ArrayList<IntSlice>();
+    buf.setReadHandler(new IntSliceConsumer() {
+      @Override
+      public void accept(IntSlice slice) {
+        slices.add(slice);
+      }
+      @Override
+      public void accept(int[] data) {
+        reads.add(data);
+      }
+    });
+    IntSlice slice = new IntSlice(new int[]{'f', 'o', 'o', 'b', 'a', 'r'}, 1, 4);
+    buf.accept(slice);
     assertEquals(0, commands.size());
+    assertEquals(0, reads.size());
+    assertEquals(1, slices.size());
+    assertTrue(slice == slices.get(0));
+  }
+
+  @Test
+  public void testCopySlice() throws Exception {
+    buf.setReadHandler(new Consumer<int[]>() {
+      @Override
+      public void accept(int[] event) {
+        reads.add(event);
+      }
+    });
+    buf.accept(new IntSlice(new int[]{'f', 'o', 'o', 'b', 'a', 'r'}, 1, 4));
+    assertEquals(1, reads.size());
+    assertEquals(new int[]{'o', 'o', 'b', 'a'}, reads.get(0));
   }
 
+  @Test
+  public void testQueueSlice() throws Exception {
+    int[] data = {'f', 'o', 'o', 'b', 'a', 'r'};
+    buf.accept(new IntSlice(data, 3, 3));
+    data[3] = 'j';
+    buf.setReadHandler(new Consumer<int[]>() {
+      @Override
+      public void accept(int[] event) {
+        reads.add(event);
+      }
+    });
+    commands.poll().run();
+    assertEquals(1, reads.size());
+    assertEquals(new int[]{'b', 'a', 'r'}, reads.get(0));
+  }
 }
@@ -23,6 +23,7 @@ import com.jcraft.jsch.UserInfo;
 import io.termd.core.TestBase;
 import io.termd.core.function.Consumer;
 import io.termd.core.ssh.TtyCommand;
+import io.termd.core.util.Helper;
 import org.apache.sshd.common.Factory;
 import org.apache.sshd.server.Command;
 import org.apache.sshd.server.SshServer;
@@ -41,8 +42,10 @@ import java.io.OutputStream;
 import java.lang.reflect.Field;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
@@ -54,6 +57,7 @@ public abstract class SshTtyTestBase extends TtyTestBase {
   ChannelShell channel;
   InputStream in;
   OutputStream out;
+  byte[] terminalMode;
 
   @Override
   protected void assertConnect(String term) throws Exception {
@@ -97,6 +101,9 @@ public abstract class SshTtyTestBase extends TtyTestBase {
     if (term != null) {
       channel.setPtyType(term);
     }
+    if (terminalMode != null) {
+      channel.setTerminalMode(terminalMode);
+    }
     channel.connect();
     in = channel.getInputStream();
     out = channel.getOutputStream();
@@ -191,6 +198,7 @@ public abstract class SshTtyTestBase extends TtyTestBase {
   public void before() {
     sshd = null;
     session = null;
+    terminalMode = null;
   }
 
   @Test
@@ -216,6 +224,79 @@ public abstract class SshTtyTestBase extends TtyTestBase {
     assertEquals(25, channel.getExitStatus());
   }
 
+  @Test
+  public void testFlowControl() throws Exception {
+    final CountDownLatch latch = new CountDownLatch(1);
+    server(new Consumer<TtyConnection>() {
+      @Override
+      public void accept(final TtyConnection conn) {
+        conn.setStdinHandler(new Consumer<int[]>() {
+          @Override
+          public void accept(int[] data) {
+            conn.write(Helper.fromCodePoints(data).toUpperCase());
+            latch.countDown();
+          }
+        });
+      }
+    });
+    // IXON enabled
+    terminalMode = new byte[]{38, 0, 0, 0, 1, 0};
+    assertConnect();
+    assertWrite("\u0013abc");
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+    Thread.sleep(100);
+    assertEquals(0, in.available());
+    assertWrite("\u0011");
+    assertEquals("ABC", assertReadString(3));
+  }
+
+  @Test(timeout = 30000)
+  public void testWriteBackToBack() throws Exception {
+    final int chunks = 128;
+    final int chunkSize = 1024;
+    final AtomicReference<FlowControlledTtyConnection> connection = new AtomicReference<FlowControlledTtyConnection>();
+    final CountDownLatch drained = new CountDownLatch(1);
+    server(new Consumer<TtyConnection>() {
+      @Override
+      public void accept(TtyConnection tty) {
+        final FlowControlledTtyConnection conn = (FlowControlledTtyConnection) tty;
+        connection.set(conn);
+        conn.setDrainHandler(new Consumer<Void>() {
+          @Override
+          public void accept(Void v) {
+            drained.countDown();
+          }
+        });
+        // Write from another thread without waiting for the previous writes to complete
+        new Thread() {
+          @Override
+          public void run() {
+            for (int i = 0;i < chunks;i++) {
+              char[] chunk = new char[chunkSize];
+              Arrays.fill(chunk, (char) ('a' + i % 26));
+              conn.write(new String(chunk));
+            }
+            if (conn.isWritable()) {
+              drained.countDown();
+            }
+          }
+        }.start();
+      }
+    });
+    assertConnect();
+    String s = assertReadString(chunks * chunkSize);
+    for (int i = 0;i < chunks;i++) {
+      for (int j = 0;j < chunkSize;j++) {
+        assertEquals('a' + i % 26, (int) s.charAt(i * chunkSize + j));
+      }
+    }
+    assertTrue(drained.await(10, TimeUnit.SECONDS));
+    // The completions of the last writes may not be processed yet
+    while (!connection.get().isWritable()) {
+      Thread.sleep(10);
+    }
+  }
+
   @After
   public void after() throws Exception {
     if (out != null) {
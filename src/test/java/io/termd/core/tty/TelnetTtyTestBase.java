@@ -1,5 +1,6 @@
 package io.termd.core.tty;
 
+import io.termd.core.function.BiConsumer;
 import io.termd.core.function.Consumer;
 import io.termd.core.function.Function;
 import io.termd.core.function.Supplier;
@@ -12,8 +13,15 @@ import org.apache.commons.net.telnet.SimpleOptionHandler;
 import org.apache.commons.net.telnet.TerminalTypeOptionHandler;
 import org.apache.commons.net.telnet.WindowSizeOptionHandler;
 import org.junit.Rule;
+import org.junit.Test;
 
 import java.io.Closeable;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.nio.charset.StandardCharsets;
 
 /**
@@ -93,4 +101,114 @@ public abstract class TelnetTtyTestBase extends TtyTestBase {
   public void testResize() throws Exception {
     // Cannot be tested with this client that does not support resize
   }
+
+  @Test
+  public void testDrain() throws Exception {
+    final int total = 256 * 1024;
+    final CountDownLatch resumed = new CountDownLatch(1);
+    final Semaphore drained = new Semaphore(0);
+    final AtomicInteger blocked = new AtomicInteger();
+    server(new Consumer<TtyConnection>() {
+      @Override
+      public void accept(TtyConnection connection) {
+        final FlowControlledTtyConnection conn = (FlowControlledTtyConnection) connection;
+        conn.setDrainHandler(new Consumer<Void>() {
+          @Override
+          public void accept(Void v) {
+            drained.release();
+          }
+        });
+        // Hold the event loop so the writes are queued
+        conn.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              resumed.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+              fail(e);
+            }
+          }
+        });
+        new Thread() {
+          @Override
+          public void run() {
+            int[] chunk = new int[4096];
+            Arrays.fill(chunk, 'a');
+            int written = 0;
+            try {
+              while (written < total) {
+                if (conn.isWritable()) {
+                  conn.stdoutHandler().accept(chunk);
+                  written += chunk.length;
+                } else {
+                  blocked.incrementAndGet();
+                  resumed.countDown();
+                  if (!drained.tryAcquire(10, TimeUnit.SECONDS)) {
+                    conn.close();
+                    return;
+                  }
+                }
+              }
+            } catch (InterruptedException e) {
+              conn.close();
+            }
+          }
+        }.start();
+      }
+    });
+    assertConnect();
+    assertEquals(total, assertReadString(total).length());
+    assertTrue(blocked.get() > 0);
+  }
+
+  @Test
+  public void testDiscardOnInterrupt() throws Exception {
+    final int total = 4 * 1024 * 1024;
+    final CountDownLatch written = new CountDownLatch(1);
+    server.start(new Supplier<TelnetHandler>() {
+      @Override
+      public TelnetHandler get() {
+        return new TelnetTtyConnection(binary, binary, charset, new Consumer<TtyConnection>() {
+          @Override
+          public void accept(final TtyConnection conn) {
+            conn.setEventHandler(new BiConsumer<TtyEvent, Integer>() {
+              @Override
+              public void accept(TtyEvent event, Integer cp) {
+                if (event == TtyEvent.INTR) {
+                  conn.write("END");
+                }
+              }
+            });
+            new Thread() {
+              @Override
+              public void run() {
+                int[] chunk = new int[4096];
+                Arrays.fill(chunk, 'a');
+                for (int i = 0;i < total;i += chunk.length) {
+                  conn.stdoutHandler().accept(chunk);
+                }
+                written.countDown();
+              }
+            }.start();
+          }
+        }).setDiscardOnInterrupt(true);
+      }
+    });
+    assertConnect();
+    assertTrue(written.await(10, TimeUnit.SECONDS));
+    assertWrite("\003");
+    InputStream in = client.client.getInputStream();
+    int received = 0;
+    StringBuilder tail = new StringBuilder();
+    while (tail.indexOf("END") == -1) {
+      int c = in.read();
+      assertTrue(c != -1);
+      if (c == 'a') {
+        received++;
+      } else {
+        tail.append((char) c);
+      }
+    }
+    assertTrue(received < total);
+  }
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.tty;
+
+import io.termd.core.function.BiConsumer;
+import io.termd.core.function.Consumer;
+import io.termd.core.util.Helper;
+import io.termd.core.util.IntSliceConsumer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class TtyEventDecoderTest {
+
+  private final List<String> received = new ArrayList<String>();
+
+  private TtyEventDecoder decoder(boolean events) {
+    TtyEventDecoder decoder = new TtyEventDecoder(3, 26, 4);
+    decoder.setReadHandler(new Consumer<int[]>() {
+      @Override
+      public void accept(int[] data) {
+        received.add(Helper.fromCodePoints(data));
+      }
+    });
+    if (events) {
+      decoder.setEventHandler(new BiConsumer<TtyEvent, Integer>() {
+        @Override
+        public void accept(TtyEvent event, Integer cp) {
+          received.add(event.name());
+        }
+      });
+    }
+    return decoder;
+  }
+
+  @Test
+  public void testDefaultEvents() {
+    decoder(true).accept(Helper.toCodePoints("ab\u0003c\u001a\u0004\u0004de\u0015\u0013"));
+    assertEquals("[ab, INTR, c, SUSP, EOF, EOF, de\u0015\u0013]", received.toString());
+  }
+
+  @Test
+  public void testNoEventHandler() {
+    decoder(false).accept(Helper.toCodePoints("ab\u0003c"));
+    assertEquals("[ab\u0003c]", received.toString());
+  }
+
+  @Test
+  public void testEnableEvents() {
+    TtyEventDecoder decoder = decoder(true);
+    for (TtyEvent event : new TtyEvent[]{TtyEvent.QUIT, TtyEvent.ERASE, TtyEvent.KILL, TtyEvent.WERASE}) {
+      decoder.setEnabled(event, true);
+    }
+    decoder.setEnabled(TtyEvent.SUSP, false);
+    decoder.accept(Helper.toCodePoints("a\u001cb\u007fc\u0015d\u0017e\u001a"));
+    assertEquals("[a, QUIT, b, ERASE, c, KILL, d, WERASE, e\u001a]", received.toString());
+  }
+
+  @Test
+  public void testControlChar() {
+    TtyEventDecoder decoder = decoder(true);
+    decoder.setControlChar(TtyEvent.INTR, 'x');
+    assertEquals('x', decoder.getControlChar(TtyEvent.INTR));
+    decoder.setControlChar(TtyEvent.EOF, TtyEventDecoder.DISABLED);
+    decoder.accept(Helper.toCodePoints("\u0003x\u0004"));
+    assertEquals("[\u0003, INTR, \u0004]", received.toString());
+  }
+
+  @Test
+  public void testLiteralNext() {
+    TtyEventDecoder decoder = decoder(true);
+    decoder.setEnabled(TtyEvent.LNEXT, true);
+    decoder.accept(Helper.toCodePoints("a\u0016\u0003b\u0016"));
+    decoder.accept(Helper.toCodePoints("\u0016\u0003"));
+    assertEquals("[a, \u0003b, \u0016, INTR]", received.toString());
+  }
+
+  @Test
+  public void testFlowControl() {
+    TtyEventDecoder decoder = decoder(false);
+    decoder.setEnabled(TtyEvent.START, true);
+    decoder.setEnabled(TtyEvent.STOP, true);
+    assertFalse(decoder.isStopped());
+    decoder.accept(Helper.toCodePoints("a\u0013b"));
+    assertTrue(decoder.isStopped());
+    decoder.accept(Helper.toCodePoints("\u0011c"));
+    assertFalse(decoder.isStopped());
+    assertEquals("[a, b, c]", received.toString());
+  }
+
+  @Test
+  public void testSignalsAheadOfBufferedInput() {
+    TtyEventDecoder decoder = decoder(true);
+    decoder.setEnabled(TtyEvent.QUIT, true);
+    final List<Runnable> tasks = new ArrayList<Runnable>();
+    ReadBuffer buffer = new ReadBuffer(new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        tasks.add(command);
+      }
+    }).setCoalescing(true);
+    IntSliceConsumer signals = decoder.signals(buffer);
+    signals.accept(Helper.toCodePoints("ab\u0003c\u001cd\u0004"));
+    assertEquals("[INTR, QUIT]", received.toString());
+    buffer.setReadHandler(decoder);
+    for (Runnable task : tasks) {
+      task.run();
+    }
+    assertEquals("[INTR, QUIT, abcd, EOF]", received.toString());
+  }
+
+  @Test
+  public void testSignalsLiteralNext() {
+    TtyEventDecoder decoder = decoder(true);
+    decoder.setEnabled(TtyEvent.LNEXT, true);
+    IntSliceConsumer signals = decoder.signals(decoder);
+    signals.accept(Helper.toCodePoints("a\u0016"));
+    signals.accept(Helper.toCodePoints("\u0003b\u0003"));
+    assertEquals("[a, \u0003b, INTR]", received.toString());
+  }
+
+  @Test
+  public void testSignalsNoEventHandler() {
+    TtyEventDecoder decoder = decoder(false);
+    decoder.signals(decoder).accept(Helper.toCodePoints("ab\u0003c"));
+    assertEquals("[ab\u0003c]", received.toString());
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.tty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.termd.core.function.Consumer;
+import io.termd.core.io.BinaryEncoder;
+import io.termd.core.util.Helper;
+import io.termd.core.util.IntSlice;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class TtyOutputEncoderTest {
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final Charset ASCII = Charset.forName("US-ASCII");
+  private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+  private static final String[] TESTS = {
+      "",
+      "a",
+      "\n",
+      "a\nb\nc",
+      "\n\nabc\n",
+      "h\u00e9llo \u20ac \u4f60\u597d",
+      "\ud83d\ude00\n\ud83d\ude00",
+      "\u00ff\u00e9\n",
+  };
+
+  @Test
+  public void testUTF8() {
+    assertEncode(UTF8);
+  }
+
+  @Test
+  public void testASCII() {
+    assertEncode(ASCII);
+  }
+
+  @Test
+  public void testCharset() {
+    assertEncode(LATIN1);
+  }
+
+  @Test
+  public void testSlice() {
+    Buffers buffers = new Buffers();
+    TtyOutputEncoder encoder = new TtyOutputEncoder(UTF8, UnpooledByteBufAllocator.DEFAULT, buffers);
+    encoder.accept(new IntSlice(Helper.toCodePoints("a\nb\nc"), 1, 3));
+    assertEquals(1, buffers.count);
+    assertEquals("\r\nb\r\n", new String(buffers.bytes.toByteArray(), UTF8));
+  }
+
+  @Test
+  public void testSetCharset() {
+    Buffers buffers = new Buffers();
+    TtyOutputEncoder encoder = new TtyOutputEncoder(ASCII, UnpooledByteBufAllocator.DEFAULT, buffers);
+    encoder.write("\u00e9");
+    encoder.setCharset(UTF8);
+    encoder.write("\u00e9");
+    assertEquals("?\u00e9", new String(buffers.bytes.toByteArray(), UTF8));
+  }
+
+  @Test
+  public void testInvalidCodePoints() {
+    Buffers buffers = new Buffers();
+    TtyOutputEncoder encoder = new TtyOutputEncoder(UTF8, UnpooledByteBufAllocator.DEFAULT, buffers);
+    encoder.accept(new int[]{'a', 0xD800, 'b', 0x110000, 'c'});
+    encoder.write("a\udc00b\ud800");
+    assertEquals("a?b?ca?b?", new String(buffers.bytes.toByteArray(), UTF8));
+  }
+
+  private void assertEncode(Charset charset) {
+    for (String test : TESTS) {
+      byte[] expected = encodeWithOutputMode(charset, test);
+      Buffers buffers = new Buffers();
+      TtyOutputEncoder encoder = new TtyOutputEncoder(charset, UnpooledByteBufAllocator.DEFAULT, buffers);
+      encoder.accept(Helper.toCodePoints(test));
+      assertEquals(test.length() > 0 ? 1 : 0, buffers.count);
+      assertArrayEquals("Invalid encoding of " + test, expected, buffers.bytes.toByteArray());
+      buffers = new Buffers();
+      encoder = new TtyOutputEncoder(charset, UnpooledByteBufAllocator.DEFAULT, buffers);
+      encoder.write(test);
+      assertEquals(test.length() > 0 ? 1 : 0, buffers.count);
+      assertArrayEquals("Invalid encoding of " + test, expected, buffers.bytes.toByteArray());
+    }
+  }
+
+  private byte[] encodeWithOutputMode(Charset charset, String s) {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    TtyOutputMode mode = new TtyOutputMode(new BinaryEncoder(charset, new Consumer<byte[]>() {
+      @Override
+      public void accept(byte[] bytes) {
+        out.write(bytes, 0, bytes.length);
+      }
+    }));
+    mode.accept(Helper.toCodePoints(s));
+    return out.toByteArray();
+  }
+
+  private static class Buffers implements Consumer<ByteBuf> {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    int count;
+    @Override
+    public void accept(ByteBuf buf) {
+      count++;
+      byte[] tmp = new byte[buf.readableBytes()];
+      buf.readBytes(tmp);
+      buf.release();
+      bytes.write(tmp, 0, tmp.length);
+    }
+  }
+}
@@ -18,6 +18,7 @@ package io.termd.core.tty;
 
 import io.termd.core.function.Consumer;
 import io.termd.core.util.Helper;
+import io.termd.core.util.IntSlice;
 import org.junit.Test;
 
 
@@ -40,6 +41,14 @@ public class TtyOutputModeTest {
     assertOutput("a\r\nb\r\nc", "a\nb\nc");
   }
 
+  @Test
+  public void testTranslateSlice() {
+    ReadHandler readHandler = new ReadHandler();
+    TtyOutputMode out = new TtyOutputMode(readHandler);
+    out.accept(new IntSlice(Helper.toCodePoints("a\nb\nc"), 1, 3));
+    assertEquals("\r\nb\r\n", Helper.fromCodePoints(readHandler.result()));
+  }
+
   private void assertOutput(String expected, String actual) {
     ReadHandler readHandler = new ReadHandler();
     TtyOutputMode out = new TtyOutputMode(readHandler);
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.util;
+
+import io.termd.core.function.Consumer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class IntSliceTest {
+
+  @Test
+  public void testView() {
+    int[] array = {'a', 'b', 'c', 'd'};
+    IntSlice slice = new IntSlice(array, 1, 2);
+    assertEquals(2, slice.length());
+    assertEquals('b', slice.get(0));
+    assertEquals('c', slice.get(1));
+    assertArrayEquals(new int[]{'b', 'c'}, slice.toArray());
+    assertEquals("bc", slice.toString());
+    array[1] = 'e';
+    assertEquals('e', slice.get(0));
+    assertSame(slice, slice.set(array, 0, 0));
+    assertTrue(slice.isEmpty());
+  }
+
+  @Test
+  public void testInvalidRange() {
+    int[] array = new int[4];
+    IntSlice slice = new IntSlice();
+    for (int[] range : new int[][]{{-1, 1}, {0, -1}, {2, 3}, {5, 0}}) {
+      try {
+        slice.set(array, range[0], range[1]);
+        fail();
+      } catch (IndexOutOfBoundsException ignore) {
+      }
+    }
+    slice.set(array, 1, 2);
+    try {
+      slice.get(2);
+      fail();
+    } catch (IndexOutOfBoundsException ignore) {
+    }
+  }
+
+  @Test
+  public void testAdapt() {
+    final ArrayList<int[]> received = new ArrayList<int[]>();
+    IntSliceConsumer adapted = IntSlice.adapt(new Consumer<int[]>() {
+      @Override
+      public void accept(int[] data) {
+        received.add(data);
+      }
+    });
+    adapted.accept(new IntSlice(new int[]{'a', 'b', 'c'}, 1, 2));
+    assertEquals(1, received.size());
+    assertArrayEquals(new int[]{'b', 'c'}, received.get(0));
+    assertSame(adapted, IntSlice.adapt(adapted));
+    assertNull(IntSlice.adapt(null));
+  }
+}